@@ -0,0 +1,77 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.northcoders.record_shop.model.Album;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode and decode time of the response formats offered by content negotiation, for one album and for album
+ * lists up to a full catalogue listing. Payload sizes, plain and gzipped, are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlbumEncodingBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    // 1 is a single album response, the rest are listings
+    @Param({"1", "100", "10000"})
+    public int albums;
+
+    private ObjectMapper mapper;
+    private Object value;
+    private JavaType type;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        mapper = switch (format) {
+            case "cbor" -> builder.factory(new CBORFactory()).build();
+            case "smile" -> builder.factory(new SmileFactory()).build();
+            default -> builder.build();
+        };
+        if (albums == 1) {
+            value = BenchmarkAlbums.album(1);
+            type = mapper.constructType(Album.class);
+        } else {
+            value = BenchmarkAlbums.albums(albums);
+            type = mapper.getTypeFactory().constructCollectionType(List.class, Album.class);
+        }
+        encoded = mapper.writerFor(type).writeValueAsBytes(value);
+        System.out.printf("%n%s, %,d albums: %,d bytes, %,d bytes gzipped%n", format, albums, encoded.length, gzipped(encoded));
+    }
+
+    private static int gzipped(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writerFor(type).writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return mapper.readValue(encoded, type);
+    }
+}
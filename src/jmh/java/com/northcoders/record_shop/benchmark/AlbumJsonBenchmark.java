@@ -0,0 +1,50 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.northcoders.record_shop.model.Album;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the album responses: one album, as from GET /{id}, and lists as from GET /.
+ * Uses a mapper configured like the one Spring MVC writes responses with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlbumJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int listSize;
+
+    private ObjectWriter albumWriter;
+    private ObjectWriter listWriter;
+    private Album album;
+    private List<Album> albums;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        albumWriter = objectMapper.writerFor(Album.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Album.class));
+        album = BenchmarkAlbums.album(1);
+        albums = BenchmarkAlbums.albums(listSize);
+    }
+
+    @Benchmark
+    public byte[] serializeAlbum() throws Exception {
+        return albumWriter.writeValueAsBytes(album);
+    }
+
+    @Benchmark
+    public byte[] serializeAlbumList() throws Exception {
+        return listWriter.writeValueAsBytes(albums);
+    }
+}
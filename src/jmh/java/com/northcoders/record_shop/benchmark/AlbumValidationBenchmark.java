@@ -0,0 +1,41 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.service.RecordShopServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating an album before it is written, for a valid album and for one with every attribute invalid.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlbumValidationBenchmark {
+
+    private final RecordShopServiceImpl recordShopService = new RecordShopServiceImpl();
+
+    private Album valid;
+    private Album invalid;
+
+    @Setup
+    public void setup() {
+        valid = BenchmarkAlbums.album(1);
+        invalid = new Album(-1, "", null, null, null, 0.0, -1);
+    }
+
+    @Benchmark
+    public Map<String, Boolean> nullAttributeCatcherValid() {
+        return recordShopService.nullAttributeCatcher(valid);
+    }
+
+    @Benchmark
+    public Map<String, Boolean> nullAttributeCatcherInvalid() {
+        return recordShopService.nullAttributeCatcher(invalid);
+    }
+}
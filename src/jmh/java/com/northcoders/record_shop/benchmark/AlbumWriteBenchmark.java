@@ -0,0 +1,48 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.service.RecordShopService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * postAlbum and putAlbum through the Spring proxied service against H2, so the cache, change events and
+ * validation are included along with the insert or update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlbumWriteBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private RecordShopService recordShopService;
+    private long putId;
+    private int next;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkAlbums.startApplication("jmh-write");
+        recordShopService = context.getBean(RecordShopService.class);
+        putId = recordShopService.postAlbum(BenchmarkAlbums.album(0)).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Album postAlbum() {
+        return recordShopService.postAlbum(BenchmarkAlbums.album(next++));
+    }
+
+    @Benchmark
+    public Album putAlbum() {
+        return recordShopService.putAlbum(BenchmarkAlbums.album(next++), putId);
+    }
+}
@@ -0,0 +1,48 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.RecordShopApplication;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.Genre;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Albums and application contexts shared by the JMH benchmarks.
+ */
+final class BenchmarkAlbums {
+
+    private BenchmarkAlbums() {}
+
+    static Album album(int i) {
+        return Album.builder()
+                .name("Album " + i)
+                .artist("Artist " + (i % 500))
+                .genre(Genre.values()[i % Genre.values().length])
+                .dateReleased(LocalDate.of(1970 + i % 50, 1 + i % 12, 1))
+                .price(5.99 + i % 20)
+                .stock(i % 30)
+                .build();
+    }
+
+    static List<Album> albums(int count) {
+        List<Album> albums = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            albums.add(album(i));
+        }
+        return albums;
+    }
+
+    // The application without a web server, on its own in-memory H2 database
+    static ConfigurableApplicationContext startApplication(String database) {
+        return new SpringApplicationBuilder(RecordShopApplication.class)
+                .run("--spring.profiles.active=benchmark",
+                        "--spring.main.web-application-type=none",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database);
+    }
+}
@@ -0,0 +1,44 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.service.RecordShopService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getAllAlbums at several catalogue sizes against H2, to show how the full scan grows with the catalogue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetAllAlbumsBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int catalogueSize;
+
+    private ConfigurableApplicationContext context;
+    private RecordShopService recordShopService;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkAlbums.startApplication("jmh-all-" + catalogueSize);
+        recordShopService = context.getBean(RecordShopService.class);
+        recordShopService.importAlbums(BenchmarkAlbums.albums(catalogueSize));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Album> getAllAlbums() {
+        return recordShopService.getAllAlbums();
+    }
+}
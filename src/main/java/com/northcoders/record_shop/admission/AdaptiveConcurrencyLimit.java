@@ -0,0 +1,149 @@
+package com.northcoders.record_shop.admission;
+
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limit that follows the latency it observes, additive increase, multiplicative decrease.
+ * <p>
+ * Each route keeps its own baseline, a moving average of its latency, so a list that always takes 200 ms isn't
+ * judged against lookups that take 2 ms. A response slower than tolerance times its route's baseline (never less
+ * than the minimum threshold), or one that was shed further down, counts as a sign of overload and cuts the limit
+ * by {@link #BACKOFF}. That happens at most once per round trip: only a request admitted after the last cut can cut
+ * again, since earlier ones were slowed by the load that caused it. Slow responses still move the baseline, with a
+ * smaller weight, so a route that has become slower for good stops cutting after a while instead of holding the
+ * limit at its minimum.
+ * <p>
+ * Each healthy response while at least half the limit is in use grows the limit by 1/limit, about one per round
+ * trip's worth of requests. Below the initial limit it grows whatever the load, so a limit cut during a spike
+ * recovers once the spike is over, even if traffic stays light.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    static final double BACKOFF = 0.9;
+
+    // Weight of each healthy latency sample in its route's baseline
+    static final double BASELINE_WEIGHT = 0.05;
+
+    // Weight of each overloaded latency sample, low enough that a short spike barely moves the baseline
+    static final double OVERLOADED_BASELINE_WEIGHT = 0.01;
+
+    // Routes with a baseline of their own, later ones share OTHER_ROUTES, so unexpected paths can't grow the map
+    static final int MAX_ROUTES = 64;
+
+    static final String OTHER_ROUTES = "*";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final HashMap<String, Baseline> baselines = new HashMap<>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final long minLatencyThresholdNanos;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance,
+                                    long minLatencyThresholdNanos) {
+        this.limit = initialLimit;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.minLatencyThresholdNanos = minLatencyThresholdNanos;
+    }
+
+    // False when the limit is reached; the caller must release every successful acquire
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Releases a request to route admitted at startNanos and adjusts the limit by how it went. shed is true when
+    // the request was turned away further down because something it needed was overloaded.
+    public void release(String route, long startNanos, long endNanos, boolean shed) {
+        long latency = endNanos - startNanos;
+        lock.lock();
+        try {
+            inFlight--;
+            Baseline baseline = baseline(route);
+            boolean overloaded = shed || (baseline.nanos > 0 && latency > latencyThresholdNanos(baseline));
+            if (overloaded) {
+                if (startNanos > lastDecreaseNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    lastDecreaseNanos = endNanos;
+                }
+                // A shed request's latency says nothing about how long the route takes
+                if (!shed) {
+                    baseline.add(latency, OVERLOADED_BASELINE_WEIGHT);
+                }
+                return;
+            }
+            baseline.add(latency, BASELINE_WEIGHT);
+            if (inFlight + 1 >= limit / 2 || limit < initialLimit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Releases without a latency sample, for requests whose duration says nothing about load
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Baseline baseline(String route) {
+        Baseline baseline = baselines.get(route);
+        if (baseline == null) {
+            String key = baselines.size() < MAX_ROUTES ? route : OTHER_ROUTES;
+            baseline = baselines.computeIfAbsent(key, k -> new Baseline());
+        }
+        return baseline;
+    }
+
+    private double latencyThresholdNanos(Baseline baseline) {
+        return Math.max(minLatencyThresholdNanos, baseline.nanos * latencyTolerance);
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Moving average of one route's latency, the first sample taken as is
+    private static final class Baseline {
+        private double nanos;
+
+        private void add(long latency, double weight) {
+            nanos = nanos == 0 ? latency : nanos + weight * (latency - nanos);
+        }
+    }
+}
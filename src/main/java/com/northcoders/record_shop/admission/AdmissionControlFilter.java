@@ -0,0 +1,134 @@
+package com.northcoders.record_shop.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of the album API. Reads and writes each have an {@link AdaptiveConcurrencyLimit}, so
+ * a backlog of slow writes can't starve cheap reads. A request over its limit is answered straight away with a 503
+ * and Retry-After instead of queueing, which keeps the latency of admitted requests stable when the database slows
+ * down rather than letting every request wait until it times out.
+ * <p>
+ * The change feed and the export are long lived streams whose duration says nothing about load, so they bypass it.
+ * Bulk imports and bulk price and stock updates are admitted and counted, but their duration grows with the
+ * request rather than the load, so they release without a latency sample. Every other request's latency is judged
+ * against its own route, its method and path with numeric segments folded to {id}.
+ * Ordered just after the observation filter, so rejections still appear in http.server.requests.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimit reads;
+    private final AdaptiveConcurrencyLimit writes;
+    private final long retryAfterSeconds;
+    private final Counter readsRejected;
+    private final Counter writesRejected;
+
+    @Autowired
+    public AdmissionControlFilter(@Value("${recordshop.admission.enabled:true}") boolean enabled,
+                                  @Value("${recordshop.admission.read.initial-limit:100}") int readInitialLimit,
+                                  @Value("${recordshop.admission.read.min-limit:10}") int readMinLimit,
+                                  @Value("${recordshop.admission.read.max-limit:1000}") int readMaxLimit,
+                                  @Value("${recordshop.admission.write.initial-limit:20}") int writeInitialLimit,
+                                  @Value("${recordshop.admission.write.min-limit:2}") int writeMinLimit,
+                                  @Value("${recordshop.admission.write.max-limit:200}") int writeMaxLimit,
+                                  @Value("${recordshop.admission.latency-tolerance:2.0}") double latencyTolerance,
+                                  @Value("${recordshop.admission.min-latency-threshold:PT0.05S}") Duration minLatencyThreshold,
+                                  @Value("${recordshop.admission.retry-after:PT1S}") Duration retryAfter,
+                                  MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.reads = new AdaptiveConcurrencyLimit(readInitialLimit, readMinLimit, readMaxLimit, latencyTolerance,
+                minLatencyThreshold.toNanos());
+        this.writes = new AdaptiveConcurrencyLimit(writeInitialLimit, writeMinLimit, writeMaxLimit, latencyTolerance,
+                minLatencyThreshold.toNanos());
+        this.retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        this.readsRejected = register(meterRegistry, "read", reads);
+        this.writesRejected = register(meterRegistry, "write", writes);
+    }
+
+    private static Counter register(MeterRegistry meterRegistry, String requestClass, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("recordshop.admission.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .description("Requests of this class the API currently admits at once")
+                .tag("class", requestClass)
+                .register(meterRegistry);
+        Gauge.builder("recordshop.admission.in.flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Admitted requests of this class still being served")
+                .tag("class", requestClass)
+                .register(meterRegistry);
+        return Counter.builder("recordshop.admission.rejected")
+                .description("Requests turned away with a 503 because the limit was reached")
+                .tag("class", requestClass)
+                .register(meterRegistry);
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return !enabled
+                || !path.startsWith("/api/recordshop")
+                || path.equals("/api/recordshop/changes")
+                || path.equals("/api/recordshop/export");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        AdaptiveConcurrencyLimit limit = read ? reads : writes;
+        if (!limit.tryAcquire()) {
+            (read ? readsRejected : writesRejected).increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("The service is overloaded, retry after " + retryAfterSeconds + " seconds");
+            return;
+        }
+        String path = path(request);
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted() || path.startsWith("/api/recordshop/bulk")) {
+                limit.release();
+            } else {
+                // A 503 from further down means the database bulkhead shed the request
+                String route = request.getMethod() + " " + NUMERIC_SEGMENT.matcher(path).replaceAll("/{id}");
+                limit.release(route, start, System.nanoTime(), response.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+        }
+    }
+
+    AdaptiveConcurrencyLimit reads() {
+        return reads;
+    }
+
+    AdaptiveConcurrencyLimit writes() {
+        return writes;
+    }
+}
@@ -1,34 +1,166 @@
 package com.northcoders.record_shop.controller;
 
-
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.northcoders.record_shop.exception.StaleAlbumVersionException;
+import com.northcoders.record_shop.feed.AlbumChangeFeed;
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumBatch;
+import com.northcoders.record_shop.model.AlbumDelta;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.AlbumPage;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.BulkImportResult;
+import com.northcoders.record_shop.model.BulkUpdateResult;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.model.PurchaseReceipt;
 import com.northcoders.record_shop.service.RecordShopService;
 import com.northcoders.record_shop.service.RecordShopServiceImpl;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.swing.text.html.Option;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Timed("recordshop.controller")
 @RequestMapping("/api/recordshop")
 public class RecordShopController{
 
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    private static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
     @Autowired
     private RecordShopServiceImpl recordShopService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AlbumChangeFeed albumChangeFeed;
+
     @GetMapping
-    public ResponseEntity<List<Album>> getAllAlbums(){
-        return new ResponseEntity<>(recordShopService.getAllAlbums(), HttpStatus.OK);
+    public ResponseEntity<List<?>> getAllAlbums(WebRequest request,
+                                                   @RequestParam(name = "artist", required = false) String artist,
+                                                   @RequestParam(name = "genre", required = false) Genre genre,
+                                                   @RequestParam(name = "releasedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+                                                   @RequestParam(name = "releasedTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+                                                   @RequestParam(name = "minPrice", required = false) Double minPrice,
+                                                   @RequestParam(name = "maxPrice", required = false) Double maxPrice,
+                                                   @RequestParam(name = "sort", required = false) List<String> sort,
+                                                   @RequestParam(name = "fields", required = false) List<String> fields){
+        // Answer from the catalogue version alone when the client's copy is current, before loading any album.
+        // Each filtered view has its own URL, so the catalogue version is a valid ETag for all of them. It is weak
+        // because the JSON, CBOR, Smile and gzipped encodings of a list all share it, and Tomcat won't compress a
+        // response with a strong ETag.
+        String eTag = "W/" + eTag(recordShopService.getCatalogueVersion());
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        AlbumFilter filter = AlbumFilter.builder()
+                .artist(artist)
+                .genre(genre)
+                .releasedFrom(releasedFrom)
+                .releasedTo(releasedTo)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .build();
+        if (fields != null) {
+            // Only the requested columns are selected and serialised, e.g. fields=name,artist,price for listings
+            return ResponseEntity.ok().eTag(eTag).body(recordShopService.getAlbums(filter, sort, fields));
+        }
+        if (filter.isEmpty() && (sort == null || sort.isEmpty())) {
+            return ResponseEntity.ok().eTag(eTag).body(recordShopService.getAllAlbums());
+        }
+        return ResponseEntity.ok().eTag(eTag).body(recordShopService.getAlbums(filter, sort));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<AlbumPage> getAlbumPage(@RequestParam(name = "cursor", required = false) String cursor,
+                                                  @RequestParam(name = "size", defaultValue = "20") int size){
+        return new ResponseEntity<>(recordShopService.getAlbumPage(cursor, size), HttpStatus.OK);
+    }
+
+    // Only what was written or deleted after the client's last watermark, so refreshing a cached catalogue after a
+    // quiet spell costs a few rows. Clients with no copy yet start from 0.
+    @GetMapping("/delta")
+    public ResponseEntity<AlbumDelta> getAlbumDelta(@RequestParam(name = "since", defaultValue = "0") long since,
+                                                    @RequestParam(name = "limit", defaultValue = "500") int limit){
+        return new ResponseEntity<>(recordShopService.getAlbumDelta(since, limit), HttpStatus.OK);
+    }
+
+    // Many albums by id in one round trip, e.g. ids=3,17,42 for a basket. Ids with no album are listed as missing
+    // rather than failing the whole request.
+    @GetMapping("/batch")
+    public ResponseEntity<AlbumBatch> getAlbumsById(@RequestParam(name = "ids") List<Long> ids){
+        return new ResponseEntity<>(recordShopService.getAlbumsById(ids), HttpStatus.OK);
+    }
+
+    @GetMapping("/search/suggest")
+    public ResponseEntity<List<AlbumSuggestion>> suggestAlbums(@RequestParam(name = "q") String query,
+                                                               @RequestParam(name = "limit", defaultValue = "10") int limit){
+        return new ResponseEntity<>(recordShopService.suggestAlbums(query, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<CatalogueStats> getCatalogueStats(){
+        return new ResponseEntity<>(recordShopService.getCatalogueStats(), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAlbums(){
+        // One album per line, written as rows come off the cursor and flushed in buffer sized chunks
+        ObjectWriter writer = objectMapper.writerFor(Album.class);
+        StreamingResponseBody body = outputStream -> {
+            BufferedOutputStream buffered = new BufferedOutputStream(outputStream, EXPORT_BUFFER_SIZE);
+            recordShopService.exportAlbums(album -> {
+                try {
+                    buffered.write(writer.writeValueAsBytes(album));
+                    buffered.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            buffered.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // Browsers send Last-Event-ID on reconnect, so a dropped stream resumes after the last change it delivered
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId){
+        return albumChangeFeed.stream(lastEventId);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Album> getAlbumById(@PathVariable(name = "id") Long id){
+    public ResponseEntity<?> getAlbumById(@PathVariable(name = "id") Long id,
+                                          @RequestParam(name = "fields", required = false) List<String> fields,
+                                          @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept){
+        if (fields != null) {
+            return new ResponseEntity<>(recordShopService.getAlbumById(id, fields), HttpStatus.OK);
+        }
         Album album = recordShopService.getAlbumById(id);
-        return new ResponseEntity<>(album, HttpStatus.OK);
+        // A matching If-None-Match is turned into a 304 without a body by Spring
+        return ResponseEntity.ok().eTag(eTag(album.getVersion(), accept)).body(album);
     }
 
     @PostMapping
@@ -36,15 +168,106 @@ public class RecordShopController{
         return new ResponseEntity<>(recordShopService.postAlbum(album), HttpStatus.OK);
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkImportResult> importAlbums(@RequestBody List<Album> albums){
+        return new ResponseEntity<>(recordShopService.importAlbums(albums), HttpStatus.OK);
+    }
+
+    // Set-based updates for sales and restocks, e.g. PATCH /bulk/price?genre=Rock&percent=-20. Albums are selected
+    // by artist, genre, a list of ids or any combination of them, and at least one must be given.
+    @PatchMapping("/bulk/price")
+    public ResponseEntity<BulkUpdateResult> repriceAlbums(@RequestParam(name = "percent") double percent,
+                                                          @RequestParam(name = "artist", required = false) String artist,
+                                                          @RequestParam(name = "genre", required = false) Genre genre,
+                                                          @RequestParam(name = "ids", required = false) List<Long> ids){
+        AlbumFilter filter = AlbumFilter.builder().artist(artist).genre(genre).build();
+        return new ResponseEntity<>(recordShopService.repriceAlbums(filter, ids, percent), HttpStatus.OK);
+    }
+
+    @PatchMapping("/bulk/stock")
+    public ResponseEntity<BulkUpdateResult> restockAlbums(@RequestParam(name = "delta") int delta,
+                                                          @RequestParam(name = "artist", required = false) String artist,
+                                                          @RequestParam(name = "genre", required = false) Genre genre,
+                                                          @RequestParam(name = "ids", required = false) List<Long> ids){
+        AlbumFilter filter = AlbumFilter.builder().artist(artist).genre(genre).build();
+        return new ResponseEntity<>(recordShopService.restockAlbums(filter, ids, delta), HttpStatus.OK);
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<Album> putAlbum(@RequestBody Album album, @PathVariable(name = "id") long id){
-        return new ResponseEntity<>(recordShopService.putAlbum(album,id), HttpStatus.OK);
+    public ResponseEntity<Album> putAlbum(@RequestBody Album album, @PathVariable(name = "id") long id,
+                                          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept){
+        Album updated = ifMatch == null
+                ? recordShopService.putAlbum(album, id)
+                : recordShopService.putAlbum(album, id, versionFromETag(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(updated.getVersion(), accept)).body(updated);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Album> deleteAlbum(@PathVariable(name = "id") long id){
-        Album album = recordShopService.deleteAlbum(id);
+    public ResponseEntity<Album> deleteAlbum(@PathVariable(name = "id") long id,
+                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Album album = ifMatch == null
+                ? recordShopService.deleteAlbum(id)
+                : recordShopService.deleteAlbum(id, versionFromETag(ifMatch));
         return new ResponseEntity<>(album, HttpStatus.OK);
     }
 
+    @PostMapping("/{id}/purchase")
+    public ResponseEntity<PurchaseReceipt> purchaseAlbum(@PathVariable(name = "id") long id,
+                                                         @RequestParam(name = "quantity", defaultValue = "1") int quantity){
+        return new ResponseEntity<>(recordShopService.purchaseAlbum(id, quantity), HttpStatus.OK);
+    }
+
+    private static String eTag(Object version){
+        return "\"" + version + "\"";
+    }
+
+    // The JSON, CBOR and Smile bodies of one album version differ byte for byte, so each gets its own strong ETag,
+    // e.g. "3", "3+cbor" and "3+smile". The encoding is picked from Accept the way Spring picks the converter: the
+    // most specific, highest quality type wins and JSON, the first converter, takes wildcards.
+    private static String eTag(long version, String accept){
+        List<MediaType> accepted;
+        try {
+            accepted = accept == null ? List.of() : new ArrayList<>(MediaType.parseMediaTypes(accept));
+            MimeTypeUtils.sortBySpecificity(accepted);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            accepted = List.of();
+        }
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                break;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return eTag(version + "+cbor");
+            }
+            if (type.isCompatibleWith(APPLICATION_SMILE)) {
+                return eTag(version + "+smile");
+            }
+        }
+        return eTag(version);
+    }
+
+    // If-Match: * matches any current version, so it is treated like no precondition at all. If-Match uses the
+    // strong comparison (RFC 9110), so a weak tag never matches. The encoding suffix is dropped, as a write replaces
+    // the album whichever encoding the client read it in.
+    private static Long versionFromETag(String ifMatch){
+        String eTag = ifMatch.trim();
+        if (eTag.equals("*")) {
+            return null;
+        }
+        if (eTag.startsWith("W/")) {
+            throw new StaleAlbumVersionException(String.format("The If-Match header: %s, is a weak tag and can't match an album version", ifMatch));
+        }
+        try {
+            String version = eTag.replace("\"", "");
+            int suffix = version.indexOf('+');
+            return Long.parseLong(suffix < 0 ? version : version.substring(0, suffix));
+        } catch (NumberFormatException e) {
+            throw new StaleAlbumVersionException(String.format("The If-Match header: %s, does not match any album version", ifMatch));
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package com.northcoders.record_shop.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a client's reads on the primary for a short window after it writes, so it sees its own write even while
+ * the replica is behind.
+ * <p>
+ * A write made while serving a request sets a cookie holding the time the window ends, and that request's own
+ * later reads stay on the primary too. Requests carrying an unexpired cookie read from the primary. Other clients
+ * keep reading from the replica, so a steady stream of writes doesn't pull every read onto the primary. Work done
+ * outside a request, such as scheduled tasks, is never pinned.
+ * <p>
+ * Reads whose result is shared with other clients, such as loading the album cache, can be sent to the primary
+ * with {@link #onPrimary}, so a lagging replica can't put an old row in front of everyone.
+ */
+@Component
+public class ReadYourWrites {
+
+    public static final String COOKIE = "recordshop-primary-until";
+
+    private static final String WROTE = ReadYourWrites.class.getName() + ".WROTE";
+
+    private final Duration window;
+    private final ThreadLocal<Boolean> primaryRead = new ThreadLocal<>();
+
+    public ReadYourWrites(@Value("${recordshop.datasource.read-your-writes-window:PT5S}") Duration window) {
+        this.window = window;
+    }
+
+    public void recordWrite() {
+        ServletRequestAttributes attributes = currentRequest();
+        if (attributes == null || window.isZero()
+                || attributes.getAttribute(WROTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return;
+        }
+        attributes.setAttribute(WROTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(System.currentTimeMillis() + window.toMillis()));
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+    }
+
+    // Runs read with its read-only transactions on the primary, whether or not the current client is pinned
+    public <T> T onPrimary(Supplier<T> read) {
+        boolean outermost = primaryRead.get() == null;
+        primaryRead.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (outermost) {
+                primaryRead.remove();
+            }
+        }
+    }
+
+    public boolean pinnedToPrimary() {
+        if (primaryRead.get() != null) {
+            return true;
+        }
+        ServletRequestAttributes attributes = currentRequest();
+        if (attributes == null) {
+            return false;
+        }
+        if (attributes.getAttribute(WROTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return true;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes ? attributes : null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.northcoders.record_shop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Adds a read replica when recordshop.datasource.replica.jdbc-url is set. spring.datasource still configures the
+ * primary, and the replica takes Hikari's own property names (jdbc-url, username, password, maximum-pool-size...).
+ * Without a replica url the application keeps Spring Boot's single datasource.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "recordshop.datasource.replica", name = "jdbc-url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("recordshop.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        return DataSourceBuilder.create().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReadYourWrites readYourWrites) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(readYourWrites);
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.Target.PRIMARY, primary,
+                ReplicaRoutingDataSource.Target.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,37 @@
+package com.northcoders.record_shop.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections for read-only transactions to the replica and everything else to the primary.
+ * <p>
+ * The read-only flag is only visible once the transaction has started, so this must sit behind a
+ * LazyConnectionDataSourceProxy that doesn't fetch the real connection until the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReplicaRoutingDataSource(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Schema updates and other work outside a transaction
+            return Target.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWrites.recordWrite();
+            return Target.PRIMARY;
+        }
+        return readYourWrites.pinnedToPrimary() ? Target.PRIMARY : Target.REPLICA;
+    }
+}
@@ -0,0 +1,42 @@
+package com.northcoders.record_shop.event;
+
+import com.northcoders.record_shop.model.Album;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Published by the service after an album is created, updated or deleted so that derived, in-memory views of the
+ * catalogue can be kept up to date incrementally instead of being rebuilt from the database.
+ */
+@Builder
+@Getter
+public class AlbumChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+
+    private final long albumId;
+
+    // State before the change, null for CREATED
+    private final Album previous;
+
+    // State after the change, null for DELETED
+    private final Album current;
+
+    public static AlbumChangedEvent created(Album album) {
+        return AlbumChangedEvent.builder().type(Type.CREATED).albumId(album.getId()).current(album).build();
+    }
+
+    public static AlbumChangedEvent updated(Album previous, Album current) {
+        return AlbumChangedEvent.builder().type(Type.UPDATED).albumId(current.getId()).previous(previous).current(current).build();
+    }
+
+    public static AlbumChangedEvent deleted(Album album) {
+        return AlbumChangedEvent.builder().type(Type.DELETED).albumId(album.getId()).previous(album).build();
+    }
+}
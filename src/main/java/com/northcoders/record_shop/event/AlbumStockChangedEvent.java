@@ -0,0 +1,29 @@
+package com.northcoders.record_shop.event;
+
+import com.northcoders.record_shop.model.Genre;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Published when only an album's stock changed, for example by a purchase, which updates the row in place without
+ * loading the album. Carries the attributes the catalogue aggregates are grouped by.
+ */
+@Builder
+@Getter
+public class AlbumStockChangedEvent {
+
+    private final long albumId;
+
+    private final Genre genre;
+
+    private final LocalDate dateReleased;
+
+    private final double price;
+
+    // Negative when stock was taken, e.g. -2 for a purchase of two
+    private final int stockDelta;
+
+    private final int remainingStock;
+}
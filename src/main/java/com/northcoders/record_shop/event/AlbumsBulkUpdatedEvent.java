@@ -0,0 +1,16 @@
+package com.northcoders.record_shop.event;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Published after a set-based price or stock update. The rows were changed by a single statement without being
+ * loaded, so unlike {@link AlbumChangedEvent} there is no before and after state to apply; listeners rebuild
+ * whatever they derive from prices or stock instead. Names and artists are never changed this way.
+ */
+@Builder
+@Getter
+public class AlbumsBulkUpdatedEvent {
+
+    private final int updated;
+}
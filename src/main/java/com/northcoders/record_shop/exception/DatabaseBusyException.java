@@ -0,0 +1,9 @@
+package com.northcoders.record_shop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DatabaseBusyException extends RuntimeException{
+    public DatabaseBusyException(String message){super(message);}
+}
@@ -1,20 +1,66 @@
 package com.northcoders.record_shop.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final Counter albumNotFound;
+    private final Counter invalidAlbum;
+
+    @Autowired
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        albumNotFound = Counter.builder("recordshop.album.errors")
+                .description("Requests rejected because of the album they referred to or sent")
+                .tag("outcome", "not_found")
+                .register(meterRegistry);
+        invalidAlbum = Counter.builder("recordshop.album.errors")
+                .description("Requests rejected because of the album they referred to or sent")
+                .tag("outcome", "invalid_attributes")
+                .register(meterRegistry);
+    }
+
     @ExceptionHandler
     public ResponseEntity<Object> handleAlbumNotFoundException(AlbumNotFoundException e){
+        albumNotFound.increment();
         return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler
     public ResponseEntity<Object> handleNullAttributeException(NullAttributeException e){
+        invalidAlbum.increment();
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleOutOfStockException(OutOfStockException e){
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleStaleAlbumVersionException(StaleAlbumVersionException e){
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleObjectOptimisticLockingFailureException(ObjectOptimisticLockingFailureException e){
+        return new ResponseEntity<>("The album was changed by another request, fetch it again and retry", HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleDatabaseBusyException(DatabaseBusyException e){
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handleInvalidQueryParameterException(InvalidQueryParameterException e){
         return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
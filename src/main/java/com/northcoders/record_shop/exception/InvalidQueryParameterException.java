@@ -0,0 +1,9 @@
+package com.northcoders.record_shop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidQueryParameterException extends RuntimeException{
+    public InvalidQueryParameterException(String message){super(message);}
+}
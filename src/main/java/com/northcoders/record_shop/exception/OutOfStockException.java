@@ -0,0 +1,9 @@
+package com.northcoders.record_shop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class OutOfStockException extends RuntimeException{
+    public OutOfStockException(String message){super(message);}
+}
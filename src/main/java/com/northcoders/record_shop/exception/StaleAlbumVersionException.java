@@ -0,0 +1,9 @@
+package com.northcoders.record_shop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class StaleAlbumVersionException extends RuntimeException{
+    public StaleAlbumVersionException(String message){super(message);}
+}
@@ -0,0 +1,262 @@
+package com.northcoders.record_shop.feed;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.event.AlbumStockChangedEvent;
+import com.northcoders.record_shop.event.AlbumsBulkUpdatedEvent;
+import com.northcoders.record_shop.model.AlbumChange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-Sent Events feed of album creates, updates, deletes and stock changes.
+ * <p>
+ * Every committed change gets the next sequence number and is kept in a ring of the last {@link #HISTORY_SIZE}
+ * changes, so a client that reconnects with Last-Event-ID is sent what it missed. Sequences only mean something to
+ * the instance that handed them out, so event ids are prefixed with an epoch picked at startup, and an id from
+ * another epoch, i.e. before a restart or from another node, is answered with a RESYNC rather than replayed. Each subscriber has its own
+ * buffer of at most {@link #SUBSCRIBER_BUFFER} changes, drained onto its connection by a virtual thread, so a slow
+ * client never blocks a write. A subscriber whose buffer overflows, or who asks to resume from a change that is no
+ * longer kept, is sent a RESYNC event and disconnected: it should reload the catalogue and reconnect from the
+ * RESYNC event's sequence. Bulk price and stock updates are sent to everyone as a RESYNC too, rather than as
+ * thousands of changes that would overflow every buffer.
+ */
+@Component
+public class AlbumChangeFeed {
+
+    static final int HISTORY_SIZE = 4096;
+    static final int SUBSCRIBER_BUFFER = 1024;
+    static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AlbumChange[] history = new AlbumChange[HISTORY_SIZE];
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private long sequence;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        publish(AlbumChange.builder()
+                .type(AlbumChange.Type.valueOf(event.getType().name()))
+                .albumId(event.getAlbumId())
+                .album(event.getCurrent()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        publish(AlbumChange.builder()
+                .type(AlbumChange.Type.STOCK)
+                .albumId(event.getAlbumId())
+                .stock(event.getRemainingStock()));
+    }
+
+    private void publish(AlbumChange.AlbumChangeBuilder builder) {
+        lock.lock();
+        try {
+            AlbumChange change = builder.sequence(++sequence).build();
+            history[(int) (change.getSequence() % HISTORY_SIZE)] = change;
+            // Offered under the lock so every subscriber sees changes in sequence order
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(change);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsBulkUpdated(AlbumsBulkUpdatedEvent event) {
+        lock.lock();
+        try {
+            // Kept in the history as well, so a client resuming from before the update is told to reload
+            AlbumChange change = AlbumChange.builder().sequence(++sequence).type(AlbumChange.Type.RESYNC).build();
+            history[(int) (change.getSequence() % HISTORY_SIZE)] = change;
+            for (Subscription subscription : subscriptions) {
+                subscription.resync();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The SSE event id for a sequence number
+    public String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // The sequence in an event id from this epoch, or null if it is malformed or from another epoch
+    private Long sequenceOf(String eventId) {
+        if (!eventId.startsWith(epoch + "-")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(eventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Changes after lastEventId are replayed first when it is given
+    public Subscription subscribe(String lastEventId) {
+        Subscription subscription = new Subscription();
+        lock.lock();
+        try {
+            if (lastEventId != null) {
+                Long lastSequence = sequenceOf(lastEventId);
+                long missed = lastSequence == null ? -1 : sequence - lastSequence;
+                if (missed < 0 || missed > Math.min(HISTORY_SIZE, SUBSCRIBER_BUFFER)) {
+                    // Unknown or too old to replay, e.g. the id came from before a restart or from another node
+                    subscription.resync();
+                    return subscription;
+                }
+                for (long s = lastSequence + 1; s <= sequence; s++) {
+                    AlbumChange change = history[(int) (s % HISTORY_SIZE)];
+                    if (change.getType() == AlbumChange.Type.RESYNC) {
+                        // A bulk update happened since
+                        subscription.resync();
+                        return subscription;
+                    }
+                    subscription.offer(change);
+                }
+            }
+            subscriptions.add(subscription);
+        } finally {
+            lock.unlock();
+        }
+        return subscription;
+    }
+
+    public SseEmitter stream(String lastEventId) {
+        SseEmitter emitter = new SseEmitter();
+        Subscription subscription = subscribe(lastEventId);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        Thread.ofVirtual().name("album-change-feed").start(() -> send(emitter, subscription));
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, Subscription subscription) {
+        try {
+            while (true) {
+                AlbumChange change = subscription.next(HEARTBEAT_INTERVAL);
+                if (change == null) {
+                    if (subscription.isClosed()) {
+                        return;
+                    }
+                    // Keeps proxies from timing out a quiet stream and finds clients that went away
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    continue;
+                }
+                emitter.send(SseEmitter.event()
+                        .id(eventId(change.getSequence()))
+                        .name(change.getType().name().toLowerCase(Locale.ROOT))
+                        .data(change, MediaType.APPLICATION_JSON));
+                if (change.getType() == AlbumChange.Type.RESYNC) {
+                    emitter.complete();
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client disconnected or the emitter already finished
+            emitter.completeWithError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } finally {
+            subscription.close();
+        }
+    }
+
+    int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    public class Subscription {
+
+        private final ReentrantLock queueLock = new ReentrantLock();
+        private final Condition notEmpty = queueLock.newCondition();
+        private final ArrayDeque<AlbumChange> queue = new ArrayDeque<>();
+        private boolean closed;
+
+        private void offer(AlbumChange change) {
+            queueLock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() == SUBSCRIBER_BUFFER) {
+                    resync();
+                    return;
+                }
+                queue.add(change);
+                notEmpty.signal();
+            } finally {
+                queueLock.unlock();
+            }
+        }
+
+        // Drops whatever is buffered and leaves only the RESYNC event, which ends the stream
+        private void resync() {
+            queueLock.lock();
+            try {
+                queue.clear();
+                queue.add(AlbumChange.builder().sequence(sequence).type(AlbumChange.Type.RESYNC).build());
+                closed = true;
+                subscriptions.remove(this);
+                notEmpty.signal();
+            } finally {
+                queueLock.unlock();
+            }
+        }
+
+        // The next change, or null if none arrived within the timeout or the subscription is closed and drained
+        public AlbumChange next(Duration timeout) throws InterruptedException {
+            queueLock.lock();
+            try {
+                long nanos = timeout.toNanos();
+                while (queue.isEmpty()) {
+                    if (closed || nanos <= 0) {
+                        return null;
+                    }
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                return queue.poll();
+            } finally {
+                queueLock.unlock();
+            }
+        }
+
+        public boolean isClosed() {
+            queueLock.lock();
+            try {
+                return closed && queue.isEmpty();
+            } finally {
+                queueLock.unlock();
+            }
+        }
+
+        public void close() {
+            queueLock.lock();
+            try {
+                closed = true;
+                subscriptions.remove(this);
+                notEmpty.signal();
+            } finally {
+                queueLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.northcoders.record_shop.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares while serving each request and records them in the
+ * recordshop.sql.statements distribution, tagged with the request's URI template and method.
+ * <p>
+ * Hibernate passes every statement through this inspector on the thread that runs it, so the count lives in a
+ * thread local that only exists while a request is being served. Statements run elsewhere, such as scheduled
+ * reconciles or the export body that is written on an async thread, aren't counted.
+ */
+@Component
+public class SqlStatementCounter extends OncePerRequestFilter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<int[]> STATEMENTS = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public SqlStatementCounter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] statements = STATEMENTS.get();
+        if (statements != null) {
+            statements[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        int[] statements = new int[1];
+        STATEMENTS.set(statements);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            STATEMENTS.remove();
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("recordshop.sql.statements")
+                    .description("SQL statements run while serving a request")
+                    .tag("uri", uri != null ? uri.toString() : "UNKNOWN")
+                    .tag("method", request.getMethod())
+                    .register(meterRegistry)
+                    .record(statements[0]);
+        }
+    }
+}
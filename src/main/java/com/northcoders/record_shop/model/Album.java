@@ -1,15 +1,24 @@
 package com.northcoders.record_shop.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 
 import java.time.LocalDate;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_album_artist", columnList = "artist"),
+        @Index(name = "idx_album_genre_price", columnList = "genre, price"),
+        @Index(name = "idx_album_date_released", columnList = "dateReleased"),
+        @Index(name = "idx_album_price", columnList = "price"),
+        @Index(name = "idx_album_change_seq", columnList = "changeSeq")
+})
 @Builder
 @Getter
 @Setter
@@ -18,7 +27,17 @@ public class Album {
     public Album() {}
 
     public Album(long id, String name, String artist, Genre genre, LocalDate dateReleased, double price, int stock) {
+        this(id, name, artist, genre, dateReleased, price, stock, 0);
+    }
+
+    public Album(long id, String name, String artist, Genre genre, LocalDate dateReleased, double price, int stock, long version) {
+        this(id, name, artist, genre, dateReleased, price, stock, version, 0);
+    }
+
+    public Album(long id, String name, String artist, Genre genre, LocalDate dateReleased, double price, int stock, long version, long changeSeq) {
         this.id = id;
+        this.changeSeq = changeSeq;
+        this.version = version;
         this.stock = stock;
         this.dateReleased = dateReleased;
         this.price = price;
@@ -28,7 +47,8 @@ public class Album {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "album_seq")
+    @SequenceGenerator(name = "album_seq", sequenceName = "album_seq", allocationSize = 50)
     @Column(updatable = false, nullable = false)
     public long id;
 
@@ -49,4 +69,16 @@ public class Album {
 
     @Column
     public int stock;
+
+    // Bumped on every update; doubles as the album's ETag
+    @Version
+    @Column
+    public long version;
+
+    // Position of the album's last write in the catalogue wide album_change_seq, which delta sync reads from.
+    // Rows that predate the column start at 0.
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column
+    public long changeSeq;
 }
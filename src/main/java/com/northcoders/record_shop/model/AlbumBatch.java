@@ -0,0 +1,17 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class AlbumBatch {
+
+    // Found albums, in the order their ids were requested
+    private final List<Album> albums;
+
+    // Requested ids with no album, e.g. ones deleted since the basket was filled
+    private final List<Long> missingIds;
+}
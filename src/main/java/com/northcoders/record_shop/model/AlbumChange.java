@@ -0,0 +1,33 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class AlbumChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        // Only the stock level changed, e.g. a purchase
+        STOCK,
+        // The subscriber missed changes: reload the catalogue, then resume from this sequence
+        RESYNC
+    }
+
+    // Increases by one per change. Sent with the feed's epoch as the SSE event id, so clients can resume with
+    // Last-Event-ID
+    private final long sequence;
+
+    private final Type type;
+
+    private final long albumId;
+
+    // The album after the change, null for DELETED, STOCK and RESYNC
+    private final Album album;
+
+    // Stock left after a STOCK change, null otherwise
+    private final Integer stock;
+}
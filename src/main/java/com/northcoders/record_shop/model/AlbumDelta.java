@@ -0,0 +1,22 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class AlbumDelta {
+
+    // Albums created or updated after the requested watermark, in the order they were written
+    private final List<Album> albums;
+
+    private final List<Long> deletedIds;
+
+    // Pass back as since on the next request
+    private final long watermark;
+
+    // True when the limit was reached before the latest change, so the client should ask again straight away
+    private final boolean hasMore;
+}
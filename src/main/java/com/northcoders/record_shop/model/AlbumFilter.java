@@ -0,0 +1,28 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@Builder
+@Getter
+public class AlbumFilter {
+
+    private final String artist;
+
+    private final Genre genre;
+
+    private final LocalDate releasedFrom;
+
+    private final LocalDate releasedTo;
+
+    private final Double minPrice;
+
+    private final Double maxPrice;
+
+    public boolean isEmpty() {
+        return artist == null && genre == null && releasedFrom == null && releasedTo == null
+                && minPrice == null && maxPrice == null;
+    }
+}
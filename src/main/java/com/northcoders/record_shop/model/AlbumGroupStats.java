@@ -0,0 +1,21 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class AlbumGroupStats {
+
+    // Genre name or release year
+    private final String group;
+
+    private final long albums;
+
+    private final double averagePrice;
+
+    private final long totalStock;
+
+    // Sum of price * stock
+    private final double inventoryValue;
+}
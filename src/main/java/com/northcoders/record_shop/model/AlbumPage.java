@@ -0,0 +1,18 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class AlbumPage {
+
+    private final List<Album> albums;
+
+    private final int size;
+
+    // Opaque token for the next page, null once the last page has been reached
+    private final String nextCursor;
+}
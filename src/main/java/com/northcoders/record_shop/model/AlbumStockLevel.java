@@ -0,0 +1,21 @@
+package com.northcoders.record_shop.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class AlbumStockLevel {
+
+    private final int stock;
+
+    private final Genre genre;
+
+    private final LocalDate dateReleased;
+
+    private final double price;
+}
@@ -0,0 +1,17 @@
+package com.northcoders.record_shop.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class AlbumSuggestion {
+
+    private final long id;
+
+    private final String name;
+
+    private final String artist;
+}
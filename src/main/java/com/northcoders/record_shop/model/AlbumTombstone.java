@@ -0,0 +1,29 @@
+package com.northcoders.record_shop.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+/**
+ * Left behind by every deleted album so delta sync clients find out about the delete. Keyed by its position in
+ * album_change_seq, the sequence album writes are numbered from, which this mapping also declares.
+ */
+@Entity
+@Getter
+public class AlbumTombstone {
+
+    public AlbumTombstone() {}
+
+    public AlbumTombstone(long changeSeq, long albumId) {
+        this.changeSeq = changeSeq;
+        this.albumId = albumId;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "album_change_seq")
+    @SequenceGenerator(name = "album_change_seq", sequenceName = "album_change_seq", allocationSize = 1)
+    @Column(updatable = false, nullable = false)
+    private long changeSeq;
+
+    @Column(updatable = false, nullable = false)
+    private long albumId;
+}
@@ -0,0 +1,14 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class BulkImportError {
+
+    // Position of the rejected album in the submitted batch
+    private final int index;
+
+    private final String message;
+}
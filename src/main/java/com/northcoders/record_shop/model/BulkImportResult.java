@@ -0,0 +1,17 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class BulkImportResult {
+
+    private final int received;
+
+    private final int imported;
+
+    private final List<BulkImportError> errors;
+}
@@ -0,0 +1,12 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class BulkUpdateResult {
+
+    // Albums matched and changed by the update
+    private final int updated;
+}
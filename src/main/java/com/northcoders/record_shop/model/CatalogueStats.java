@@ -0,0 +1,15 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class CatalogueStats {
+
+    private final List<AlbumGroupStats> byGenre;
+
+    private final List<AlbumGroupStats> byReleaseYear;
+}
@@ -0,0 +1,15 @@
+package com.northcoders.record_shop.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class PurchaseReceipt {
+
+    private final long albumId;
+
+    private final int quantity;
+
+    private final int remainingStock;
+}
@@ -0,0 +1,45 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumFilter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single statement album writes that report the row they changed, so the service doesn't have to read an album
+ * before updating or deleting it. Existence and the version precondition are decided by whether a row matched.
+ * Every write also takes the next value of album_change_seq, which is what delta sync reads changes by.
+ */
+public interface AlbumMutations {
+
+    // Longest a write transaction may run, in seconds. Delta sync relies on it, see ChangeSeqHorizon.
+    String WRITE_TIMEOUT = "${recordshop.db.write-timeout-seconds:10}";
+
+    // Overwrites every attribute and bumps the version, returning the album as it was before. Empty when no album
+    // has the id, or when expectedVersion is given and doesn't match.
+    Optional<Album> updateReturningPrevious(long id, Album album, Long expectedVersion);
+
+    // Deletes the album, leaves a tombstone for it and returns it, empty under the same conditions as
+    // updateReturningPrevious
+    Optional<Album> deleteReturning(long id, Long expectedVersion);
+
+    // Conditional decrement: the row lock taken by the UPDATE serialises concurrent buyers and the
+    // WHERE clause refuses to go below zero, so there is no read-modify-write window to oversell in
+    int decrementStock(long id, int quantity);
+
+    // Sets the change sequence of albums about to be inserted, with one query for the whole list. Call it in the
+    // transaction that inserts them, so the values are committed with the rows.
+    void assignChangeSequences(List<Album> albums);
+
+    // Set-based updates of every album matching the filter and, when ids is not null, having one of the ids. One
+    // UPDATE however many rows match, each of which gets a new version and change sequence. Returns the row count.
+
+    // Multiplies prices by factor, rounded to whole cents and never below one cent unless already free
+    int updatePrices(AlbumFilter filter, Collection<Long> ids, double factor);
+
+    // Adds delta to stock, stopping at zero when it is negative. Albums already out of stock don't match a negative
+    // delta, so they are neither counted nor given a new version.
+    int updateStock(AlbumFilter filter, Collection<Long> ids, int delta);
+}
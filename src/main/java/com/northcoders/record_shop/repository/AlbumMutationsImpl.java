@@ -0,0 +1,231 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.Genre;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Postgres returns the affected row from the UPDATE or DELETE itself. The UPDATE reads the previous values through
+ * a CTE that locks the row first, so they are exactly the values it overwrote. H2, used locally and in tests, gets
+ * the same result by selecting from the statement's OLD TABLE. H2 can't chain a delete into an insert, so it writes
+ * the tombstone with a second statement where Postgres uses one.
+ */
+public class AlbumMutationsImpl implements AlbumMutations {
+
+    private static final String COLUMNS = "id, name, artist, genre, date_released, price, stock, version";
+
+    private static final String SET = "name = :name, artist = :artist, genre = :genre, date_released = :dateReleased, "
+            + "price = :price, stock = :stock";
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    private Dialect dialect;
+
+    @Override
+    @Transactional(timeoutString = WRITE_TIMEOUT)
+    public Optional<Album> updateReturningPrevious(long id, Album album, Long expectedVersion) {
+        String sql;
+        if (isPostgres()) {
+            sql = "with previous as (select " + COLUMNS + " from album where id = :id for update) "
+                    + "update album a set " + SET + ", version = previous.version + 1, change_seq = " + nextChangeSeq()
+                    + " from previous "
+                    + "where a.id = previous.id" + versionCheck("previous", expectedVersion)
+                    + " returning previous.id, previous.name, previous.artist, previous.genre, previous.date_released, "
+                    + "previous.price, previous.stock, previous.version";
+        } else {
+            sql = "select " + COLUMNS + " from old table (update album set " + SET + ", version = version + 1, "
+                    + "change_seq = " + nextChangeSeq() + " where id = :id" + versionCheck("album", expectedVersion) + ")";
+        }
+        Query query = entityManager.createNativeQuery(sql)
+                .setParameter("id", id)
+                .setParameter("name", album.getName())
+                .setParameter("artist", album.getArtist())
+                .setParameter("genre", album.getGenre().ordinal())
+                .setParameter("dateReleased", album.getDateReleased())
+                .setParameter("price", album.getPrice())
+                .setParameter("stock", album.getStock());
+        return singleAlbum(query, expectedVersion);
+    }
+
+    @Override
+    @Transactional(timeoutString = WRITE_TIMEOUT)
+    public Optional<Album> deleteReturning(long id, Long expectedVersion) {
+        String delete = "delete from album where id = :id" + versionCheck("album", expectedVersion);
+        if (isPostgres()) {
+            String sql = "with deleted as (" + delete + " returning " + COLUMNS + "), "
+                    + "tombstone as (insert into album_tombstone (change_seq, album_id) select " + nextChangeSeq()
+                    + ", id from deleted) select " + COLUMNS + " from deleted";
+            return singleAlbum(entityManager.createNativeQuery(sql).setParameter("id", id), expectedVersion);
+        }
+        Optional<Album> deleted = singleAlbum(entityManager.createNativeQuery(
+                "select " + COLUMNS + " from old table (" + delete + ")").setParameter("id", id), expectedVersion);
+        if (deleted.isPresent()) {
+            entityManager.createNativeQuery("insert into album_tombstone (change_seq, album_id) values ("
+                    + nextChangeSeq() + ", :id)").setParameter("id", id).executeUpdate();
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional(timeoutString = WRITE_TIMEOUT)
+    public int decrementStock(long id, int quantity) {
+        return entityManager.createNativeQuery("update album set stock = stock - :quantity, version = version + 1, "
+                        + "change_seq = " + nextChangeSeq() + " where id = :id and stock >= :quantity")
+                .setParameter("id", id)
+                .setParameter("quantity", quantity)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional(timeoutString = WRITE_TIMEOUT)
+    public void assignChangeSequences(List<Album> albums) {
+        if (albums.isEmpty()) {
+            return;
+        }
+        String rows = isPostgres() ? "generate_series(1, :count)" : "system_range(1, :count)";
+        @SuppressWarnings("unchecked")
+        List<Number> sequences = entityManager.createNativeQuery("select " + nextChangeSeq() + " from " + rows)
+                .setParameter("count", albums.size())
+                .getResultList();
+        Iterator<Number> sequence = sequences.iterator();
+        for (Album album : albums) {
+            album.setChangeSeq(sequence.next().longValue());
+        }
+    }
+
+    @Override
+    @Transactional(timeoutString = WRITE_TIMEOUT)
+    public int updatePrices(AlbumFilter filter, Collection<Long> ids, double factor) {
+        // Postgres has no round(double precision, int), so round to cents by hand. A cut never rounds a price down to
+        // nothing: it stops at a cent, unless the album was already free.
+        Query query = entityManager.createNativeQuery("update album set price = "
+                + "greatest(round(price * :factor * 100) / 100, least(price, 0.01)), "
+                + bulkChange() + matching(filter, ids)).setParameter("factor", factor);
+        return bind(query, filter, ids).executeUpdate();
+    }
+
+    @Override
+    @Transactional(timeoutString = WRITE_TIMEOUT)
+    public int updateStock(AlbumFilter filter, Collection<Long> ids, int delta) {
+        // Taking stock leaves albums already at zero alone, rather than giving them a new version that changes nothing
+        Query query = entityManager.createNativeQuery("update album set stock = greatest(stock + :delta, 0), "
+                + bulkChange() + matching(filter, ids) + (delta < 0 ? " and stock > 0" : ""))
+                .setParameter("delta", delta);
+        return bind(query, filter, ids).executeUpdate();
+    }
+
+    // The sequence is read once per row, so delta sync still sees every row as its own change
+    private String bulkChange() {
+        return "version = version + 1, change_seq = " + nextChangeSeq();
+    }
+
+    // Native equivalent of AlbumSpecifications.matching, plus the id list
+    private static String matching(AlbumFilter filter, Collection<Long> ids) {
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        if (filter.getArtist() != null) {
+            where.append(" and artist = :artist");
+        }
+        if (filter.getGenre() != null) {
+            where.append(" and genre = :genre");
+        }
+        if (filter.getReleasedFrom() != null) {
+            where.append(" and date_released >= :releasedFrom");
+        }
+        if (filter.getReleasedTo() != null) {
+            where.append(" and date_released <= :releasedTo");
+        }
+        if (filter.getMinPrice() != null) {
+            where.append(" and price >= :minPrice");
+        }
+        if (filter.getMaxPrice() != null) {
+            where.append(" and price <= :maxPrice");
+        }
+        if (ids != null) {
+            where.append(" and id in (:ids)");
+        }
+        return where.toString();
+    }
+
+    private static Query bind(Query query, AlbumFilter filter, Collection<Long> ids) {
+        if (filter.getArtist() != null) {
+            query.setParameter("artist", filter.getArtist());
+        }
+        if (filter.getGenre() != null) {
+            query.setParameter("genre", filter.getGenre().ordinal());
+        }
+        if (filter.getReleasedFrom() != null) {
+            query.setParameter("releasedFrom", filter.getReleasedFrom());
+        }
+        if (filter.getReleasedTo() != null) {
+            query.setParameter("releasedTo", filter.getReleasedTo());
+        }
+        if (filter.getMinPrice() != null) {
+            query.setParameter("minPrice", filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            query.setParameter("maxPrice", filter.getMaxPrice());
+        }
+        if (ids != null) {
+            query.setParameter("ids", ids);
+        }
+        return query;
+    }
+
+    private static String versionCheck(String table, Long expectedVersion) {
+        return expectedVersion == null ? "" : " and " + table + ".version = :expectedVersion";
+    }
+
+    private static Optional<Album> singleAlbum(Query query, Long expectedVersion) {
+        if (expectedVersion != null) {
+            query.setParameter("expectedVersion", expectedVersion);
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        return rows.stream().findFirst().map(AlbumMutationsImpl::album);
+    }
+
+    // Row layout: COLUMNS
+    private static Album album(Object[] row) {
+        Object dateReleased = row[4];
+        return new Album(((Number) row[0]).longValue(),
+                (String) row[1],
+                (String) row[2],
+                row[3] == null ? null : Genre.values()[((Number) row[3]).intValue()],
+                dateReleased instanceof Date date ? date.toLocalDate() : (LocalDate) dateReleased,
+                ((Number) row[5]).doubleValue(),
+                ((Number) row[6]).intValue(),
+                ((Number) row[7]).longValue());
+    }
+
+    private boolean isPostgres() {
+        return dialect() instanceof PostgreSQLDialect;
+    }
+
+    // nextval('album_change_seq') on Postgres, next value for album_change_seq on H2
+    private String nextChangeSeq() {
+        return dialect().getSequenceSupport().getSelectSequenceNextValString("album_change_seq");
+    }
+
+    private Dialect dialect() {
+        if (dialect == null) {
+            dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect();
+        }
+        return dialect;
+    }
+}
@@ -0,0 +1,21 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sparse fieldset reads: only the requested album attributes are selected, and each row comes back as a map of
+ * attribute name to value in the requested order, so no Album entity is created or dirty checked.
+ */
+public interface AlbumProjections {
+
+    List<Map<String, Object>> findAttributes(Specification<Album> specification, Sort sort, Collection<String> attributes);
+
+    Optional<Map<String, Object>> findAttributesById(long id, Collection<String> attributes);
+}
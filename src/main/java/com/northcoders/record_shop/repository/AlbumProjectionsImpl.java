@@ -0,0 +1,75 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tuple queries built with the criteria API, because any combination of attributes can be requested and a fixed
+ * interface or DTO projection would only cover one of them.
+ */
+public class AlbumProjectionsImpl implements AlbumProjections {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findAttributes(Specification<Album> specification, Sort sort, Collection<String> attributes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Album> album = query.from(Album.class);
+        query.multiselect(selections(album, attributes));
+        Predicate predicate = specification.toPredicate(album, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, album, builder));
+        List<Tuple> rows = entityManager.createQuery(query).getResultList();
+        List<Map<String, Object>> albums = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            albums.add(toMap(row, attributes));
+        }
+        return albums;
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findAttributesById(long id, Collection<String> attributes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Album> album = query.from(Album.class);
+        query.multiselect(selections(album, attributes)).where(builder.equal(album.get("id"), id));
+        return entityManager.createQuery(query).getResultStream().findFirst().map(row -> toMap(row, attributes));
+    }
+
+    private static List<Selection<?>> selections(Root<Album> album, Collection<String> attributes) {
+        List<Selection<?>> selections = new ArrayList<>(attributes.size());
+        for (String attribute : attributes) {
+            selections.add(album.get(attribute).alias(attribute));
+        }
+        return selections;
+    }
+
+    private static Map<String, Object> toMap(Tuple row, Collection<String> attributes) {
+        Map<String, Object> album = new LinkedHashMap<>();
+        for (String attribute : attributes) {
+            album.put(attribute, row.get(attribute));
+        }
+        return album;
+    }
+}
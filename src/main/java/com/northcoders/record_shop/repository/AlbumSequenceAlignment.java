@@ -0,0 +1,37 @@
+package com.northcoders.record_shop.repository;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Runs db/postgres/album-seq.sql at startup when the database is Postgres, which keeps album_seq ahead of ids left
+ * over from when albums used IDENTITY columns. Runners start once Hibernate has updated the schema. Checking the
+ * connected database rather than the active profile means an embedded database swapped in by a test is left alone.
+ */
+@Component
+public class AlbumSequenceAlignment implements ApplicationRunner {
+
+    static final String SCRIPT = "db/postgres/album-seq.sql";
+
+    private final DataSource dataSource;
+
+    public AlbumSequenceAlignment(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws MetaDataAccessException {
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        if ("PostgreSQL".equals(product)) {
+            new ResourceDatabasePopulator(new ClassPathResource(SCRIPT)).execute(dataSource);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumFilter;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class AlbumSpecifications {
+
+    private AlbumSpecifications() {}
+
+    // Only plain equality and range predicates on the indexed columns, so the planner can use the Album indexes
+    public static Specification<Album> matching(AlbumFilter filter) {
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getArtist() != null) {
+                predicates.add(builder.equal(root.get("artist"), filter.getArtist()));
+            }
+            if (filter.getGenre() != null) {
+                predicates.add(builder.equal(root.get("genre"), filter.getGenre()));
+            }
+            if (filter.getReleasedFrom() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(root.get("dateReleased"), filter.getReleasedFrom()));
+            }
+            if (filter.getReleasedTo() != null) {
+                predicates.add(builder.lessThanOrEqualTo(root.get("dateReleased"), filter.getReleasedTo()));
+            }
+            if (filter.getMinPrice() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+            }
+            if (filter.getMaxPrice() != null) {
+                predicates.add(builder.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -1,8 +1,71 @@
 package com.northcoders.record_shop.repository;
 
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumStockLevel;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.model.AlbumTombstone;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface RecordShopRepository extends CrudRepository<Album, Long> {}
+public interface RecordShopRepository extends CrudRepository<Album, Long>, JpaSpecificationExecutor<Album>, AlbumMutations,
+        AlbumProjections {
+
+    // Keyset page: seeks straight to the cursor through the primary key index, no OFFSET scan
+    List<Album> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    // Delta sync: seeks through idx_album_change_seq to the albums written after the client's watermark, up to the
+    // settled horizon
+    List<Album> findByChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(long changeSeq, long upTo, Limit limit);
+
+    @Query("select t from AlbumTombstone t where t.changeSeq > :changeSeq and t.changeSeq <= :upTo order by t.changeSeq")
+    List<AlbumTombstone> findTombstonesBetween(@Param("changeSeq") long changeSeq, @Param("upTo") long upTo, Limit limit);
+
+    // Highest committed change sequences, sampled by ChangeSeqHorizon and used as the catalogue version. Both read
+    // the end of an index.
+    @Query("select coalesce(max(a.changeSeq), 0) from Album a")
+    long findLatestAlbumChangeSeq();
+
+    @Query("select coalesce(max(t.changeSeq), 0) from AlbumTombstone t")
+    long findLatestTombstoneChangeSeq();
+
+    // Server side cursor for full exports: rows arrive in fetch size chunks and are never dirty checked.
+    // Must be consumed inside a transaction and closed by the caller.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Album> streamAllByOrderByIdAsc();
+
+    // DTO projection for building the search index, no managed entities are created
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.northcoders.record_shop.model.AlbumSuggestion(a.id, a.name, a.artist) from Album a")
+    Stream<AlbumSuggestion> streamAllSuggestions();
+
+    // Only read after a conditional write matched no row, to tell a missing album from a stale version
+    @Query("select a.version from Album a where a.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    // Stock plus the attributes the catalogue aggregates group by, without loading the album
+    @Query("select new com.northcoders.record_shop.model.AlbumStockLevel(a.stock, a.genre, a.dateReleased, a.price) from Album a where a.id = :id")
+    Optional<AlbumStockLevel> findStockLevelById(@Param("id") long id);
+
+    // Rows of genre, count, sum(price), sum(stock), sum(price * stock) for reconciling the catalogue aggregates
+    @Query("select a.genre, count(a), sum(a.price), sum(a.stock), sum(a.price * a.stock) from Album a group by a.genre")
+    List<Object[]> sumByGenre();
+
+    // As sumByGenre, grouped by release year
+    @Query("select year(a.dateReleased), count(a), sum(a.price), sum(a.stock), sum(a.price * a.stock) from Album a group by year(a.dateReleased)")
+    List<Object[]> sumByReleaseYear();
+}
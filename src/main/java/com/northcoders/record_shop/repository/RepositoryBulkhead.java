@@ -0,0 +1,93 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.exception.DatabaseBusyException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many threads can be inside a repository call at once.
+ * <p>
+ * With virtual threads there is no request thread pool to run out of, so thousands of requests can reach the
+ * repositories together and pile up in the connection pool until Hikari's connection timeout fails them. The fair
+ * semaphore queues them here instead, in arrival order, and turns a wait longer than the acquire timeout into a 503.
+ * It parks rather than blocking inside a monitor, so waiting virtual threads never pin their carrier.
+ * <p>
+ * Applied to every Spring Data repository proxy by {@link RepositoryBulkheadPostProcessor}, and around every
+ * {@code @Transactional} method by {@link TransactionBulkheadConfig} so the permit covers the whole time a transaction
+ * holds its connection. Calls made while the thread already holds a permit, e.g. a repository used from inside a
+ * transactional service method, don't take another one. Work run through a {@code TransactionTemplate} outside
+ * either of those, such as the startup index build, is only bounded per repository call.
+ */
+@Component
+public class RepositoryBulkhead implements MethodInterceptor {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+    private final ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+
+    @Autowired
+    public RepositoryBulkhead(@Value("${recordshop.db.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+                              @Value("${recordshop.db.acquire-timeout:PT5S}") Duration acquireTimeout,
+                              MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        Gauge.builder("recordshop.db.bulkhead.available", permits, Semaphore::availablePermits)
+                .description("Repository calls that can start without waiting")
+                .register(meterRegistry);
+        Gauge.builder("recordshop.db.bulkhead.waiting", permits, Semaphore::getQueueLength)
+                .description("Threads waiting to make a repository call")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        int held = depth.get();
+        if (held > 0) {
+            return proceed(invocation, held);
+        }
+        acquire(invocation);
+        try {
+            return proceed(invocation, held);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Object proceed(MethodInvocation invocation, int held) throws Throwable {
+        depth.set(held + 1);
+        try {
+            return invocation.proceed();
+        } finally {
+            if (held == 0) {
+                depth.remove();
+            } else {
+                depth.set(held);
+            }
+        }
+    }
+
+    private void acquire(MethodInvocation invocation) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new DatabaseBusyException(String.format("The database is busy, %s could not start within %s ms",
+                        invocation.getMethod().getName(), TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseBusyException(String.format("Interrupted waiting to call %s", invocation.getMethod().getName()));
+        }
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,30 @@
+package com.northcoders.record_shop.repository;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the {@link RepositoryBulkhead} as the outermost advice on every repository proxy as it is created.
+ * The bulkhead is looked up lazily so registering this post processor doesn't create it, or the meter registry it
+ * depends on, ahead of the other beans.
+ */
+@Component
+public class RepositoryBulkheadPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<RepositoryBulkhead> bulkhead;
+
+    public RepositoryBulkheadPostProcessor(ObjectProvider<RepositoryBulkhead> bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(0, bulkhead.getObject())));
+        }
+        return bean;
+    }
+}
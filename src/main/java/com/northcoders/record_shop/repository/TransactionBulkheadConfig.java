@@ -0,0 +1,40 @@
+package com.northcoders.record_shop.repository;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Puts the {@link RepositoryBulkhead} around every {@code @Transactional} method as well as every repository call.
+ * <p>
+ * A transaction holds its connection from the first statement until it commits, so a permit taken per repository
+ * call would be released while the connection is still checked out, and the semaphore would no longer bound the
+ * Hikari pool. This advisor runs ahead of the transaction interceptor, so the permit is taken before the connection
+ * and held until it is returned. Repository calls inside the method see the permit already held and don't take
+ * another.
+ */
+@Configuration
+public class TransactionBulkheadConfig {
+
+    // Static and lazy, for the same reason as RepositoryBulkheadPostProcessor: advisors are created before the other
+    // beans, and creating the bulkhead here would pull the meter registry in early
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor transactionBulkheadAdvisor(ObjectProvider<RepositoryBulkhead> bulkhead) {
+        ComposablePointcut transactional = new ComposablePointcut(new AnnotationMatchingPointcut(Transactional.class, true))
+                .union(AnnotationMatchingPointcut.forMethodAnnotation(Transactional.class));
+        MethodInterceptor advice = invocation -> bulkhead.getObject().invoke(invocation);
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(transactional, advice);
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+}
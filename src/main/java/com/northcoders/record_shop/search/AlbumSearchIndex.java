@@ -0,0 +1,376 @@
+package com.northcoders.record_shop.search;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory typeahead index over album names and artists.
+ * <p>
+ * Names and artists are normalised (lower case, accents stripped, punctuation folded to spaces) and split into
+ * tokens. A sorted token map gives prefix lookups as a range scan, and each token points at a compact posting list
+ * of album ids. The index is built from the database once the application is ready and then kept current from
+ * {@link AlbumChangedEvent}s, so suggestions never touch the database.
+ */
+@Component
+public class AlbumSearchIndex {
+
+    public static final int MAX_SUGGESTIONS = 50;
+
+    // Posting lists longer than this keep a map of where each id sits, so removing an album from a common token
+    // doesn't scan the whole list
+    static final int INDEXED_POSTINGS_SIZE = 64;
+
+    // Rough JVM sizes used for the memory footprint estimate
+    private static final long OBJECT_OVERHEAD = 16;
+    private static final long REFERENCE = 8;
+    private static final long MAP_ENTRY_OVERHEAD = 40;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final HashMap<Long, Document> documents = new HashMap<>();
+    private long estimatedBytes;
+
+    @Autowired
+    RecordShopRepository recordShopRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    public AlbumSearchIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("recordshop.search.index.albums", this, AlbumSearchIndex::size)
+                .description("Albums held in the typeahead index")
+                .register(meterRegistry);
+        Gauge.builder("recordshop.search.index.memory", this, AlbumSearchIndex::estimatedSizeInBytes)
+                .description("Estimated heap used by the typeahead index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("recordshop.search.index.memory.per.album", this, AlbumSearchIndex::estimatedBytesPerAlbum)
+                .description("Estimated heap used by the typeahead index per album")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // Not read-only, so the index is built from the primary rather than a replica that may be behind
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            try (Stream<AlbumSuggestion> albums = recordShopRepository.streamAllSuggestions()) {
+                albums.forEach(album -> index(album.getId(), album.getName(), album.getArtist()));
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        if (event.getType() == AlbumChangedEvent.Type.DELETED) {
+            remove(event.getAlbumId());
+        } else {
+            Album album = event.getCurrent();
+            index(album.getId(), album.getName(), album.getArtist());
+        }
+    }
+
+    public void index(long id, String name, String artist) {
+        Document document = new Document(id, name, artist);
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            documents.put(id, document);
+            estimatedBytes += MAP_ENTRY_OVERHEAD + document.estimatedBytes();
+            for (int i = 0; i < document.tokens.length; i++) {
+                String token = document.tokens[i];
+                Postings posting = postings.get(token);
+                if (posting == null) {
+                    posting = new Postings();
+                    postings.put(token, posting);
+                    estimatedBytes += MAP_ENTRY_OVERHEAD + stringBytes(token) + posting.estimatedBytes();
+                } else {
+                    // Share the map's copy of the token rather than keeping a duplicate per album
+                    document.tokens[i] = postings.ceilingKey(token);
+                }
+                estimatedBytes -= posting.estimatedBytes();
+                posting.add(id);
+                estimatedBytes += posting.estimatedBytes();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeDocument(long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        estimatedBytes -= MAP_ENTRY_OVERHEAD + document.estimatedBytes();
+        for (String token : document.tokens) {
+            Postings posting = postings.get(token);
+            estimatedBytes -= posting.estimatedBytes();
+            posting.remove(id);
+            if (posting.size == 0) {
+                postings.remove(token);
+                estimatedBytes -= MAP_ENTRY_OVERHEAD + stringBytes(token);
+            } else {
+                estimatedBytes += posting.estimatedBytes();
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} albums whose name or artist contains a word starting with every word of the
+     * query, best matches first: whole-word matches beat prefix matches, and a name or artist that starts with the
+     * whole query ranks highest. Ties go to the shorter name.
+     */
+    public List<AlbumSuggestion> suggest(String query, int limit) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        String[] queryTokens = normalizedQuery.split(" ");
+        // Seed candidates from the longest query word, it has the narrowest token range
+        String seed = queryTokens[0];
+        for (String token : queryTokens) {
+            if (token.length() > seed.length()) {
+                seed = token;
+            }
+        }
+        int size = Math.min(limit, MAX_SUGGESTIONS);
+        PriorityQueue<ScoredDocument> best = new PriorityQueue<>(size + 1, RANKING.reversed());
+        lock.readLock().lock();
+        try {
+            // Every candidate is scored, since postings are in no particular order and stopping early would miss
+            // better matches. The bounded heap keeps that O(candidates log limit).
+            Set<Long> seen = new HashSet<>();
+            for (Postings posting : postings.subMap(seed, seed + Character.MAX_VALUE).values()) {
+                for (int i = 0; i < posting.size; i++) {
+                    long id = posting.ids[i];
+                    if (!seen.add(id)) {
+                        continue;
+                    }
+                    Document document = documents.get(id);
+                    int score = score(document, normalizedQuery, queryTokens);
+                    if (score > 0) {
+                        best.offer(new ScoredDocument(document, score));
+                        if (best.size() > size) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<ScoredDocument> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        List<AlbumSuggestion> suggestions = new ArrayList<>(ranked.size());
+        for (ScoredDocument scored : ranked) {
+            suggestions.add(new AlbumSuggestion(scored.document.id, scored.document.name, scored.document.artist));
+        }
+        return suggestions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long estimatedSizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return estimatedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double estimatedBytesPerAlbum() {
+        lock.readLock().lock();
+        try {
+            return documents.isEmpty() ? 0 : (double) estimatedBytes / documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int score(Document document, String normalizedQuery, String[] queryTokens) {
+        int score = 0;
+        for (String queryToken : queryTokens) {
+            int tokenScore = 0;
+            for (String token : document.tokens) {
+                if (token.equals(queryToken)) {
+                    tokenScore = 2;
+                    break;
+                }
+                if (token.startsWith(queryToken)) {
+                    tokenScore = 1;
+                }
+            }
+            if (tokenScore == 0) {
+                return 0;
+            }
+            score += tokenScore;
+        }
+        if (document.normalizedName.startsWith(normalizedQuery)) {
+            score += 4;
+        } else if (document.normalizedArtist.startsWith(normalizedQuery)) {
+            score += 3;
+        }
+        return score;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static long stringBytes(String value) {
+        // String object plus its Latin-1 backing array
+        return OBJECT_OVERHEAD + REFERENCE + 8 + OBJECT_OVERHEAD + value.length();
+    }
+
+    private static final Comparator<ScoredDocument> RANKING = Comparator
+            .comparingInt((ScoredDocument scored) -> scored.score).reversed()
+            .thenComparingInt(scored -> scored.document.normalizedName.length())
+            .thenComparingLong(scored -> scored.document.id);
+
+    private record ScoredDocument(Document document, int score) {}
+
+    private static final class Document {
+        private final long id;
+        private final String name;
+        private final String artist;
+        private final String normalizedName;
+        private final String normalizedArtist;
+        private final String[] tokens;
+
+        private Document(long id, String name, String artist) {
+            this.id = id;
+            this.name = name;
+            this.artist = artist;
+            this.normalizedName = normalize(name);
+            this.normalizedArtist = normalize(artist);
+            Set<String> distinct = new LinkedHashSet<>();
+            for (String text : new String[]{normalizedName, normalizedArtist}) {
+                if (!text.isEmpty()) {
+                    distinct.addAll(Arrays.asList(text.split(" ")));
+                }
+            }
+            this.tokens = distinct.toArray(new String[0]);
+        }
+
+        private long estimatedBytes() {
+            long bytes = OBJECT_OVERHEAD + 6 * REFERENCE + 8;
+            for (String text : new String[]{name, artist, normalizedName, normalizedArtist}) {
+                bytes += text == null ? 0 : stringBytes(text);
+            }
+            // Tokens are shared with the posting map keys once indexed, so only the array is counted here
+            return bytes + OBJECT_OVERHEAD + (long) tokens.length * REFERENCE;
+        }
+    }
+
+    // Unordered, growable list of album ids; removal swaps the last id into the gap. Long lists also map each id to
+    // its slot, so removal is constant time for common tokens while the many short lists stay plain arrays.
+    private static final class Postings {
+        private long[] ids = new long[2];
+        private int size;
+        private HashMap<Long, Integer> slots;
+
+        private void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            if (slots != null) {
+                slots.put(id, size - 1);
+            } else if (size > INDEXED_POSTINGS_SIZE) {
+                slots = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    slots.put(ids[i], i);
+                }
+            }
+        }
+
+        private void remove(long id) {
+            int slot = slots == null ? find(id) : slots.getOrDefault(id, -1);
+            if (slot < 0) {
+                return;
+            }
+            long last = ids[--size];
+            ids[slot] = last;
+            if (slots != null) {
+                slots.remove(id);
+                if (slot != size) {
+                    slots.put(last, slot);
+                }
+            }
+        }
+
+        private int find(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private long estimatedBytes() {
+            long bytes = OBJECT_OVERHEAD + 2 * REFERENCE + 4 + OBJECT_OVERHEAD + (long) ids.length * Long.BYTES;
+            // Entry plus a boxed Long key and Integer value each
+            return slots == null ? bytes : bytes + OBJECT_OVERHEAD + (long) slots.size() * (MAP_ENTRY_OVERHEAD + 2 * OBJECT_OVERHEAD + 12);
+        }
+    }
+}
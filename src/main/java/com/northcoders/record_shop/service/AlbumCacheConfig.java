@@ -0,0 +1,33 @@
+package com.northcoders.record_shop.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.interceptor.CacheResolver;
+import org.springframework.cache.interceptor.SimpleCacheResolver;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Makes the caching annotations transaction aware: a put or evict made while a transaction is running is applied
+ * once it commits, and dropped if it rolls back. Evicting before the commit would let a concurrent getAlbumById
+ * load the old row and cache it for the full expiry time.
+ * <p>
+ * Only the annotations go through the proxy. The cache manager bean itself stays the plain Caffeine one, so cache
+ * metrics and the caches actuator endpoint still see Caffeine caches.
+ */
+@Configuration
+public class AlbumCacheConfig implements CachingConfigurer {
+
+    private final ObjectProvider<CacheManager> cacheManager;
+
+    public AlbumCacheConfig(ObjectProvider<CacheManager> cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    // Called on first use of the caching annotations, by which time Spring Boot has created the cache manager
+    @Override
+    public CacheResolver cacheResolver() {
+        return new SimpleCacheResolver(new TransactionAwareCacheManagerProxy(cacheManager.getObject()));
+    }
+}
@@ -0,0 +1,32 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.exception.InvalidQueryParameterException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Encodes the keyset position of a catalogue page (the last album id returned) as an opaque,
+ * URL safe token so clients can't depend on the id ordering behind it.
+ */
+public final class AlbumCursor {
+
+    private AlbumCursor() {}
+
+    public static String encode(long lastId) {
+        byte[] bytes = ByteBuffer.allocate(Long.BYTES).putLong(lastId).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static long decode(String cursor) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != Long.BYTES) {
+                throw new IllegalArgumentException();
+            }
+            return ByteBuffer.wrap(bytes).getLong();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryParameterException(String.format("The cursor: %s, is not valid", cursor));
+        }
+    }
+}
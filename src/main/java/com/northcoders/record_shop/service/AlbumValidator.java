@@ -0,0 +1,99 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.model.Album;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks an album's attributes before it is written and reports the invalid ones as a bitmask, one bit per
+ * attribute, so validating allocates nothing. The error message for every combination of invalid attributes is
+ * built once up front and looked up by mask.
+ */
+public final class AlbumValidator {
+
+    public static final int ID = 1;
+    public static final int NAME = 1 << 1;
+    public static final int ARTIST = 1 << 2;
+    public static final int DATE_RELEASED = 1 << 3;
+    public static final int GENRE = 1 << 4;
+    public static final int STOCK = 1 << 5;
+    public static final int PRICE = 1 << 6;
+
+    public static final int VALID = 0;
+
+    // Attribute bits and names, in the order error messages have always listed them
+    private static final int[] MESSAGE_ORDER = {ARTIST, PRICE, NAME, GENRE, DATE_RELEASED, ID, STOCK};
+    private static final String[] MESSAGE_NAMES = {"artist", "price", "name", "genre", "dateReleased", "id", "stock"};
+
+    private static final String[] MESSAGES = new String[1 << MESSAGE_ORDER.length];
+
+    static {
+        for (int violations = 1; violations < MESSAGES.length; violations++) {
+            StringBuilder message = new StringBuilder("The following attributes are invalid: [");
+            String separator = "";
+            for (int i = 0; i < MESSAGE_ORDER.length; i++) {
+                if ((violations & MESSAGE_ORDER[i]) != 0) {
+                    message.append(separator).append(MESSAGE_NAMES[i]);
+                    separator = ", ";
+                }
+            }
+            MESSAGES[violations] = message.append(']').toString();
+        }
+    }
+
+    private AlbumValidator() {}
+
+    public static int violations(Album album) {
+        int violations = VALID;
+        if (album.getId() < 0) {
+            violations |= ID;
+        }
+        if (album.getName() == null || album.getName().isEmpty()) {
+            violations |= NAME;
+        }
+        if (album.getArtist() == null || album.getArtist().isEmpty()) {
+            violations |= ARTIST;
+        }
+        if (album.getDateReleased() == null) {
+            violations |= DATE_RELEASED;
+        }
+        if (album.getGenre() == null) {
+            violations |= GENRE;
+        }
+        if (album.getStock() < 0) {
+            violations |= STOCK;
+        }
+        if (album.getPrice() <= 0.0) {
+            violations |= PRICE;
+        }
+        return violations;
+    }
+
+    // Fills violations[i] for albums.get(i) and returns how many albums are invalid
+    public static int violations(List<Album> albums, int[] violations) {
+        int invalid = 0;
+        for (int i = 0; i < albums.size(); i++) {
+            violations[i] = violations(albums.get(i));
+            if (violations[i] != VALID) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    // Null when there are no violations
+    public static String message(int violations) {
+        return MESSAGES[violations];
+    }
+
+    // Every attribute mapped to whether it is invalid, for callers of RecordShopService.nullAttributeCatcher
+    public static Map<String, Boolean> toMap(int violations) {
+        Map<String, Boolean> attributes = new HashMap<>();
+        for (int i = 0; i < MESSAGE_ORDER.length; i++) {
+            attributes.put(MESSAGE_NAMES[i], (violations & MESSAGE_ORDER[i]) != 0);
+        }
+        return attributes;
+    }
+}
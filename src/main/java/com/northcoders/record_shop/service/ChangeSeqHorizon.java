@@ -0,0 +1,81 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.repository.AlbumMutations;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+
+/**
+ * The change sequence up to which every write has either committed or rolled back, which is as far as delta sync
+ * reads.
+ * <p>
+ * A write takes its change_seq when it runs, not when it commits, so a slow transaction can commit a value below one
+ * a faster transaction already committed. A client that had synced past the faster one would never see it. Write
+ * transactions time out after {@link AlbumMutations#WRITE_TIMEOUT} seconds, so once the settle time has passed
+ * since the highest committed change_seq was read, nothing below it can still be in flight. The highest value is
+ * sampled every second and becomes the horizon once it is settle time old.
+ * <p>
+ * Changes reach delta sync one settle time late in exchange, including for a settle time after startup. A settle
+ * time of zero turns the horizon off and reads up to the latest committed change. The horizon says nothing about
+ * what a replica has applied, so delta sync reads from the primary.
+ */
+@Component
+public class ChangeSeqHorizon {
+
+    private final long settleNanos;
+    // Pairs of sample time and the change sequence read at it, oldest first
+    private final ArrayDeque<long[]> samples = new ArrayDeque<>();
+    private volatile long settled;
+
+    @Autowired
+    RecordShopRepository recordShopRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    public ChangeSeqHorizon(@Value("${recordshop.delta.settle-time:PT15S}") Duration settleTime,
+                            @Value(AlbumMutations.WRITE_TIMEOUT) long writeTimeoutSeconds) {
+        if (!settleTime.isZero() && settleTime.compareTo(Duration.ofSeconds(writeTimeoutSeconds)) <= 0) {
+            throw new IllegalStateException(String.format(
+                    "recordshop.delta.settle-time: %s, must be longer than the %s second write timeout", settleTime, writeTimeoutSeconds));
+        }
+        this.settleNanos = settleTime.toNanos();
+    }
+
+    // Highest change sequence delta sync may hand out
+    public long settled() {
+        return settleNanos == 0 ? Long.MAX_VALUE : settled;
+    }
+
+    @Scheduled(fixedDelayString = "${recordshop.delta.sample-interval:PT1S}")
+    public void sample() {
+        if (settleNanos == 0) {
+            return;
+        }
+        // Taken before the query, so a sample is never credited with more settling than it had
+        long sampledAt = System.nanoTime();
+        // Read-only, so it goes to the replica when there is one. A value the replica has was committed on the primary
+        // before sampledAt, so a lagging replica only holds the horizon further back.
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        long latest = transaction.execute(status -> Math.max(recordShopRepository.findLatestAlbumChangeSeq(),
+                recordShopRepository.findLatestTombstoneChangeSeq()));
+        record(sampledAt, latest, System.nanoTime());
+    }
+
+    synchronized void record(long sampledAt, long changeSeq, long now) {
+        samples.add(new long[]{sampledAt, changeSeq});
+        while (!samples.isEmpty() && now - samples.peek()[0] >= settleNanos) {
+            // Never moves back, e.g. if a sample was answered by a replica further behind than the last one
+            settled = Math.max(settled, samples.poll()[1]);
+        }
+    }
+}
@@ -1,16 +1,42 @@
 package com.northcoders.record_shop.service;
 
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumBatch;
+import com.northcoders.record_shop.model.AlbumDelta;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.AlbumPage;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.BulkImportResult;
+import com.northcoders.record_shop.model.BulkUpdateResult;
+import com.northcoders.record_shop.model.PurchaseReceipt;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface RecordShopService {
     public List<Album> getAllAlbums();
+    public List<Album> getAlbums(AlbumFilter filter, List<String> sort);
+    public List<Map<String, Object>> getAlbums(AlbumFilter filter, List<String> sort, List<String> fields);
+    public AlbumPage getAlbumPage(String cursor, int size);
+    public AlbumDelta getAlbumDelta(long since, int limit);
+    public long exportAlbums(Consumer<Album> consumer);
+    public String getCatalogueVersion();
     public Album getAlbumById(Long id);
+    public Map<String, Object> getAlbumById(Long id, List<String> fields);
+    public AlbumBatch getAlbumsById(List<Long> ids);
+    public List<AlbumSuggestion> suggestAlbums(String query, int limit);
+    public CatalogueStats getCatalogueStats();
     public Album postAlbum(Album album);
+    public BulkImportResult importAlbums(List<Album> albums);
+    public BulkUpdateResult repriceAlbums(AlbumFilter filter, List<Long> ids, double percent);
+    public BulkUpdateResult restockAlbums(AlbumFilter filter, List<Long> ids, int delta);
     public Album putAlbum(Album album, long id);
+    public Album putAlbum(Album album, long id, Long expectedVersion);
     public Album deleteAlbum(long id);
+    public Album deleteAlbum(long id, Long expectedVersion);
+    public PurchaseReceipt purchaseAlbum(long id, int quantity);
     public Map<String, Boolean> nullAttributeCatcher(Album album);
 }
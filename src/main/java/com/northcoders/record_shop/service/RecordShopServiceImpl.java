@@ -1,26 +1,99 @@
 package com.northcoders.record_shop.service;
 
+import com.northcoders.record_shop.datasource.ReadYourWrites;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.event.AlbumStockChangedEvent;
+import com.northcoders.record_shop.event.AlbumsBulkUpdatedEvent;
 import com.northcoders.record_shop.exception.AlbumNotFoundException;
 import com.northcoders.record_shop.exception.NullAttributeException;
+import com.northcoders.record_shop.exception.InvalidQueryParameterException;
+import com.northcoders.record_shop.exception.OutOfStockException;
+import com.northcoders.record_shop.exception.StaleAlbumVersionException;
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumBatch;
+import com.northcoders.record_shop.model.AlbumDelta;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.AlbumPage;
+import com.northcoders.record_shop.model.AlbumStockLevel;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.model.AlbumTombstone;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.BulkImportError;
+import com.northcoders.record_shop.model.BulkImportResult;
+import com.northcoders.record_shop.model.BulkUpdateResult;
+import com.northcoders.record_shop.model.PurchaseReceipt;
+import com.northcoders.record_shop.repository.AlbumMutations;
+import com.northcoders.record_shop.repository.AlbumSpecifications;
 import com.northcoders.record_shop.repository.RecordShopRepository;
+import com.northcoders.record_shop.search.AlbumSearchIndex;
+import com.northcoders.record_shop.stats.CatalogueAggregates;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 @Service
+@Timed("recordshop.service")
 public class RecordShopServiceImpl implements RecordShopService {
 
+    public static final String ALBUM_CACHE = "albums";
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final Set<String> SORTABLE_ATTRIBUTES = Set.of("id", "name", "artist", "genre", "dateReleased", "price", "stock");
+
+    public static final Set<String> SELECTABLE_ATTRIBUTES = Set.of("id", "name", "artist", "genre", "dateReleased", "price", "stock", "version");
+
+    public static final int MAX_DELTA_SIZE = 1_000;
+
+    public static final int MAX_MULTI_GET_SIZE = 1_000;
+
+    // Ids per IN list, keeps each statement well under driver bind parameter limits
+    public static final int MULTI_GET_CHUNK_SIZE = 500;
+
+    public static final int MAX_IMPORT_SIZE = 10_000;
+
+    // Matches hibernate.jdbc.batch_size and the album_seq allocation size
+    public static final int IMPORT_BATCH_SIZE = 50;
+
     @Autowired
     RecordShopRepository recordShopRepository;
 
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    AlbumSearchIndex albumSearchIndex;
+
+    @Autowired
+    CatalogueAggregates catalogueAggregates;
+
+    @Autowired
+    ChangeSeqHorizon changeSeqHorizon;
+
+    @Autowired
+    ReadYourWrites readYourWrites;
+
+    final SingleFlight<Long, Album> albumLookups = new SingleFlight<>();
+
     @Override
+    @Transactional(readOnly = true)
     public List<Album> getAllAlbums() {
         List<Album> albums = new ArrayList<>();
         recordShopRepository.findAll().forEach(albums::add);
@@ -28,102 +101,446 @@ public class RecordShopServiceImpl implements RecordShopService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Album> getAlbums(AlbumFilter filter, List<String> sort) {
+        validateFilter(filter);
+        return recordShopRepository.findAll(AlbumSpecifications.matching(filter), parseSort(sort));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAlbums(AlbumFilter filter, List<String> sort, List<String> fields) {
+        validateFilter(filter);
+        return recordShopRepository.findAttributes(AlbumSpecifications.matching(filter), parseSort(sort), parseFields(fields));
+    }
+
+    private void validateFilter(AlbumFilter filter) {
+        if (filter.getReleasedFrom() != null && filter.getReleasedTo() != null
+                && filter.getReleasedFrom().isAfter(filter.getReleasedTo())) {
+            throw new InvalidQueryParameterException("releasedFrom must not be after releasedTo");
+        }
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new InvalidQueryParameterException("minPrice must not be greater than maxPrice");
+        }
+    }
+
+    // Attribute names to select, in the order they were asked for and without repeats
+    private Set<String> parseFields(List<String> fields) {
+        Set<String> attributes = new LinkedHashSet<>();
+        for (String field : fields) {
+            String attribute = field.trim();
+            if (!SELECTABLE_ATTRIBUTES.contains(attribute)) {
+                throw new InvalidQueryParameterException(String.format("Cannot select field: %s", field));
+            }
+            attributes.add(attribute);
+        }
+        if (attributes.isEmpty()) {
+            throw new InvalidQueryParameterException("At least one field must be selected");
+        }
+        return attributes;
+    }
+
+    // Sort entries are attribute names in priority order, prefixed with '-' for descending
+    private Sort parseSort(List<String> sort) {
+        if (sort == null || sort.isEmpty()) {
+            return Sort.by("id");
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String entry : sort) {
+            String attribute = entry.trim();
+            Sort.Direction direction = Sort.Direction.ASC;
+            if (attribute.startsWith("-")) {
+                attribute = attribute.substring(1);
+                direction = Sort.Direction.DESC;
+            }
+            if (!SORTABLE_ATTRIBUTES.contains(attribute)) {
+                throw new InvalidQueryParameterException(String.format("Cannot sort by: %s", entry));
+            }
+            orders.add(new Sort.Order(direction, attribute));
+        }
+        return Sort.by(orders);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AlbumPage getAlbumPage(String cursor, int size) {
+        if (size < 1) {
+            throw new InvalidQueryParameterException(String.format("The page size: %s, must be at least 1", size));
+        }
+        int pageSize = Math.min(size, MAX_PAGE_SIZE);
+        long afterId = cursor == null || cursor.isEmpty() ? 0 : AlbumCursor.decode(cursor);
+        // Fetch one extra row to find out if there is a next page without a count query
+        List<Album> albums = recordShopRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1));
+        String nextCursor = null;
+        if (albums.size() > pageSize) {
+            albums = albums.subList(0, pageSize);
+            nextCursor = AlbumCursor.encode(albums.get(pageSize - 1).getId());
+        }
+        return AlbumPage.builder()
+                .albums(albums)
+                .size(albums.size())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AlbumDelta getAlbumDelta(long since, int limit) {
+        if (since < 0) {
+            throw new InvalidQueryParameterException(String.format("The watermark: %s, must not be negative", since));
+        }
+        if (limit < 1) {
+            throw new InvalidQueryParameterException(String.format("The limit: %s, must be at least 1", limit));
+        }
+        int size = Math.min(limit, MAX_DELTA_SIZE);
+        // Nothing past the horizon, where a write still in flight could commit below a watermark handed out now
+        long upTo = changeSeqHorizon.settled();
+        // Both lists are already in change order, one extra row each tells whether anything is left after this delta.
+        // They are read from the primary: the horizon only says what has committed there, and a lagging replica
+        // would hand out a watermark past changes it hasn't applied yet, which the client would then never fetch.
+        List<Album> changed = readYourWrites.onPrimary(() -> recordShopRepository
+                .findByChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(since, upTo, Limit.of(size + 1)));
+        List<AlbumTombstone> tombstones = readYourWrites.onPrimary(() ->
+                recordShopRepository.findTombstonesBetween(since, upTo, Limit.of(size + 1)));
+        List<Album> albums = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        long watermark = since;
+        int a = 0;
+        int t = 0;
+        while (a + t < size && (a < changed.size() || t < tombstones.size())) {
+            if (t == tombstones.size()
+                    || (a < changed.size() && changed.get(a).getChangeSeq() < tombstones.get(t).getChangeSeq())) {
+                Album album = changed.get(a++);
+                albums.add(album);
+                watermark = album.getChangeSeq();
+            } else {
+                AlbumTombstone tombstone = tombstones.get(t++);
+                deletedIds.add(tombstone.getAlbumId());
+                watermark = tombstone.getChangeSeq();
+            }
+        }
+        return AlbumDelta.builder()
+                .albums(albums)
+                .deletedIds(deletedIds)
+                .watermark(watermark)
+                .hasMore(a < changed.size() || t < tombstones.size())
+                .build();
+    }
+
+    @Override
+    public List<AlbumSuggestion> suggestAlbums(String query, int limit) {
+        if (limit < 1) {
+            throw new InvalidQueryParameterException(String.format("The limit: %s, must be at least 1", limit));
+        }
+        return albumSearchIndex.suggest(query, Math.min(limit, AlbumSearchIndex.MAX_SUGGESTIONS));
+    }
+
+    @Override
+    public CatalogueStats getCatalogueStats() {
+        return catalogueAggregates.snapshot();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportAlbums(Consumer<Album> consumer) {
+        long exported = 0;
+        try (Stream<Album> albums = recordShopRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Album> iterator = albums.iterator();
+            while (iterator.hasNext()) {
+                Album album = iterator.next();
+                consumer.accept(album);
+                // Detach as we go so the persistence context stays empty however large the catalogue is
+                entityManager.detach(album);
+                exported++;
+            }
+        }
+        return exported;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String getCatalogueVersion() {
+        // Every create, update, purchase, bulk update and delete takes a new change sequence, so the highest one moves
+        // on every change. Both reads take the end of an index rather than aggregating the table.
+        return String.valueOf(Math.max(recordShopRepository.findLatestAlbumChangeSeq(),
+                recordShopRepository.findLatestTombstoneChangeSeq()));
+    }
+
+    // Concurrent misses for the same id share one findById, whether or not the cache is in front. Not
+    // @Transactional: findById has its own read-only transaction, so callers waiting on another's load don't hold
+    // a connection while they wait. Misses always load from the primary: the result is cached for every client,
+    // and a row read from a lagging replica just after a write would be served until it expires. That also means
+    // every coalesced load reads the same database, so a pinned client never waits on a replica read.
+    @Override
+    @Cacheable(cacheNames = ALBUM_CACHE, key = "#id")
     public Album getAlbumById(Long id) {
-        Optional<Album> album = recordShopRepository.findById(id);
-        if (album.isPresent()) {
-            return album.get();
-        } else {
-            throw new AlbumNotFoundException(String.format("No Album with id: %s, was found in the system", id));
+        return albumLookups.load(id, () -> {
+            Optional<Album> album = readYourWrites.onPrimary(() -> recordShopRepository.findById(id));
+            if (album.isPresent()) {
+                return album.get();
+            } else {
+                throw new AlbumNotFoundException(String.format("No Album with id: %s, was found in the system", id));
+            }
+        });
+    }
+
+    // One IN list query per chunk of ids instead of a findById each, so a 50 album basket is a single SELECT.
+    // Repeated ids are looked up once.
+    @Override
+    @Transactional(readOnly = true)
+    public AlbumBatch getAlbumsById(List<Long> ids) {
+        if (ids.size() > MAX_MULTI_GET_SIZE) {
+            throw new InvalidQueryParameterException(
+                    String.format("At most %s albums can be fetched at once, got %s", MAX_MULTI_GET_SIZE, ids.size()));
+        }
+        List<Long> requested = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, Album> found = new HashMap<>(requested.size() * 2);
+        for (int from = 0; from < requested.size(); from += MULTI_GET_CHUNK_SIZE) {
+            List<Long> chunk = requested.subList(from, Math.min(from + MULTI_GET_CHUNK_SIZE, requested.size()));
+            for (Album album : recordShopRepository.findAllById(chunk)) {
+                found.put(album.getId(), album);
+            }
         }
+        List<Album> albums = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            Album album = found.get(id);
+            if (album != null) {
+                albums.add(album);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return AlbumBatch.builder()
+                .albums(albums)
+                .missingIds(missingIds)
+                .build();
+    }
+
+    // Not cached: it reads a handful of columns by primary key, and sharing the full album cache would mean
+    // loading whole albums for it
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getAlbumById(Long id, List<String> fields) {
+        return recordShopRepository.findAttributesById(id, parseFields(fields))
+                .orElseThrow(() -> new AlbumNotFoundException(String.format("No Album with id: %s, was found in the system", id)));
     }
 
+    // Transactional so the change sequence is taken in the transaction that inserts the album
     @Override
+    @Transactional(timeoutString = AlbumMutations.WRITE_TIMEOUT)
+    @CachePut(cacheNames = ALBUM_CACHE, key = "#result.id")
     public Album postAlbum(Album album) {
-        Map<String, Boolean> nullCheckMap = nullAttributeCatcher(album);
-        List<String> nullKeys = new ArrayList<>();
-        if (nullCheckMap.containsValue(true)) {
-            for (var e : nullCheckMap.entrySet()) {
-                if (e.getValue().equals(true)) {
-                    nullKeys.add(e.getKey());
-                }
+        int violations = AlbumValidator.violations(album);
+        if (violations != AlbumValidator.VALID) {
+            throw new NullAttributeException(AlbumValidator.message(violations));
+        }
+        // Posting always creates a new album, whatever id or version the client sent
+        album.setId(0);
+        album.setVersion(0);
+        recordShopRepository.assignChangeSequences(List.of(album));
+        Album savedAlbum = recordShopRepository.save(album);
+        eventPublisher.publishEvent(AlbumChangedEvent.created(savedAlbum));
+        return savedAlbum;
+    }
+
+    @Override
+    @Transactional(timeoutString = AlbumMutations.WRITE_TIMEOUT)
+    public BulkImportResult importAlbums(List<Album> albums) {
+        if (albums.size() > MAX_IMPORT_SIZE) {
+            throw new InvalidQueryParameterException(
+                    String.format("A bulk import can contain at most %s albums, got %s", MAX_IMPORT_SIZE, albums.size()));
+        }
+        // Validate the whole request in one pass before any album is written
+        int[] violations = new int[albums.size()];
+        int invalid = AlbumValidator.violations(albums, violations);
+        List<BulkImportError> errors = new ArrayList<>(invalid);
+        List<Album> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        int imported = 0;
+        for (int i = 0; i < albums.size(); i++) {
+            if (violations[i] != AlbumValidator.VALID) {
+                errors.add(BulkImportError.builder().index(i).message(AlbumValidator.message(violations[i])).build());
+                continue;
             }
-            throw new NullAttributeException("The following attributes are invalid: " + nullKeys.toString());
+            Album album = albums.get(i);
+            // Imported albums are always new rows, so they take the persist path and get pooled sequence ids
+            album.setId(0);
+            album.setVersion(0);
+            batch.add(album);
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                imported += flushImportBatch(batch);
+            }
+        }
+        imported += flushImportBatch(batch);
+        return BulkImportResult.builder()
+                .received(albums.size())
+                .imported(imported)
+                .errors(errors)
+                .build();
+    }
+
+    private int flushImportBatch(List<Album> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        recordShopRepository.assignChangeSequences(batch);
+        for (Album album : recordShopRepository.saveAll(batch)) {
+            eventPublisher.publishEvent(AlbumChangedEvent.created(album));
+        }
+        // One JDBC batch per chunk, then drop the inserted entities so the session stays small
+        entityManager.flush();
+        entityManager.clear();
+        int flushed = batch.size();
+        batch.clear();
+        return flushed;
+    }
+
+    // Repricing a genre for a sale is one UPDATE instead of a findById and save per album. Which albums changed
+    // isn't known without reading them back, so the whole cache is dropped rather than evicting by id.
+    @Override
+    @Transactional(timeoutString = AlbumMutations.WRITE_TIMEOUT)
+    @CacheEvict(cacheNames = ALBUM_CACHE, allEntries = true)
+    public BulkUpdateResult repriceAlbums(AlbumFilter filter, List<Long> ids, double percent) {
+        if (!(percent > -100) || Double.isInfinite(percent) || percent == 0) {
+            throw new InvalidQueryParameterException(
+                    String.format("The price change: %s%%, must be a non zero percentage above -100", percent));
+        }
+        List<Long> selectedIds = validateSelection(filter, ids);
+        int updated = recordShopRepository.updatePrices(filter, selectedIds, 1 + percent / 100);
+        return bulkUpdated(updated);
+    }
+
+    @Override
+    @Transactional(timeoutString = AlbumMutations.WRITE_TIMEOUT)
+    @CacheEvict(cacheNames = ALBUM_CACHE, allEntries = true)
+    public BulkUpdateResult restockAlbums(AlbumFilter filter, List<Long> ids, int delta) {
+        if (delta == 0) {
+            throw new InvalidQueryParameterException("The stock change must not be 0");
+        }
+        List<Long> selectedIds = validateSelection(filter, ids);
+        int updated = recordShopRepository.updateStock(filter, selectedIds, delta);
+        return bulkUpdated(updated);
+    }
+
+    // A bulk update has to name what it changes, so an empty filter can't reprice the whole catalogue by mistake.
+    // Returns the ids to restrict to, null when the filter alone selects.
+    private List<Long> validateSelection(AlbumFilter filter, List<Long> ids) {
+        validateFilter(filter);
+        List<Long> selectedIds = ids == null || ids.isEmpty() ? null : ids;
+        if (filter.isEmpty() && selectedIds == null) {
+            throw new InvalidQueryParameterException("A bulk update needs a filter or a list of ids");
+        }
+        if (selectedIds != null && selectedIds.size() > MAX_IMPORT_SIZE) {
+            throw new InvalidQueryParameterException(
+                    String.format("A bulk update can list at most %s ids, got %s", MAX_IMPORT_SIZE, selectedIds.size()));
+        }
+        return selectedIds;
+    }
+
+    private BulkUpdateResult bulkUpdated(int updated) {
+        if (updated > 0) {
+            eventPublisher.publishEvent(AlbumsBulkUpdatedEvent.builder().updated(updated).build());
         }
-        return recordShopRepository.save(album);
+        return BulkUpdateResult.builder()
+                .updated(updated)
+                .build();
     }
 
     @Override
+    @CachePut(cacheNames = ALBUM_CACHE, key = "#id")
     public Album putAlbum(Album album, long id) {
-        Map<String, Boolean> nullCheckMap = nullAttributeCatcher(album);
-        List<String> nullKeys = new ArrayList<>();
-        if (nullCheckMap.containsValue(true)) {
-            for (var e : nullCheckMap.entrySet()) {
-                if (e.getValue().equals(true)) {
-                    nullKeys.add(e.getKey());
-                }
-            }
-            throw new NullAttributeException("The following attributes are invalid: " + nullKeys.toString());
+        return updateAlbum(album, id, null);
+    }
+
+    @Override
+    @CachePut(cacheNames = ALBUM_CACHE, key = "#id")
+    public Album putAlbum(Album album, long id, Long expectedVersion) {
+        return updateAlbum(album, id, expectedVersion);
+    }
+
+    private Album updateAlbum(Album album, long id, Long expectedVersion) {
+        int violations = AlbumValidator.violations(album);
+        if (violations != AlbumValidator.VALID) {
+            throw new NullAttributeException(AlbumValidator.message(violations));
         }
-        Optional<Album> optionalAlbum = recordShopRepository.findById(id);
-        if (optionalAlbum.isPresent()) {
-            album.setId(id);
-            return recordShopRepository.save(album);
-        } else {
-            throw new AlbumNotFoundException(String.format("No Album with id: %s, was found in the system", id));
+        // One UPDATE decides existence and the version precondition and hands back the values it overwrote
+        Optional<Album> previous = recordShopRepository.updateReturningPrevious(id, album, expectedVersion);
+        if (previous.isEmpty()) {
+            throw missingOrStale(id, expectedVersion);
         }
+        album.setId(id);
+        album.setVersion(previous.get().getVersion() + 1);
+        eventPublisher.publishEvent(AlbumChangedEvent.updated(previous.get(), album));
+        return album;
     }
 
     @Override
+    @CacheEvict(cacheNames = ALBUM_CACHE, key = "#id")
     public Album deleteAlbum(long id) {
-        Optional<Album> album = recordShopRepository.findById(id);
-        Album deletedAlbum;
-        if (album.isPresent()) {
-            deletedAlbum = album.get();
-            recordShopRepository.deleteById(id);
-            return deletedAlbum;
-        } else {
+        return removeAlbum(id, null);
+    }
+
+    @Override
+    @CacheEvict(cacheNames = ALBUM_CACHE, key = "#id")
+    public Album deleteAlbum(long id, Long expectedVersion) {
+        return removeAlbum(id, expectedVersion);
+    }
+
+    private Album removeAlbum(long id, Long expectedVersion) {
+        Optional<Album> deletedAlbum = recordShopRepository.deleteReturning(id, expectedVersion);
+        if (deletedAlbum.isEmpty()) {
+            throw missingOrStale(id, expectedVersion);
+        }
+        eventPublisher.publishEvent(AlbumChangedEvent.deleted(deletedAlbum.get()));
+        return deletedAlbum.get();
+    }
+
+    // Only called once a conditional write has matched no row, so the extra read is off the success path
+    private RuntimeException missingOrStale(long id, Long expectedVersion) {
+        if (expectedVersion != null) {
+            Optional<Long> version = recordShopRepository.findVersionById(id);
+            if (version.isPresent()) {
+                return new StaleAlbumVersionException(String.format("Album with id: %s, is at version %s, not %s",
+                        id, version.get(), expectedVersion));
+            }
+        }
+        return new AlbumNotFoundException(String.format("No Album with id: %s, was found in the system", id));
+    }
+
+    @Override
+    @Transactional(timeoutString = AlbumMutations.WRITE_TIMEOUT)
+    @CacheEvict(cacheNames = ALBUM_CACHE, key = "#id")
+    public PurchaseReceipt purchaseAlbum(long id, int quantity) {
+        if (quantity < 1) {
+            throw new InvalidQueryParameterException(String.format("The quantity: %s, must be at least 1", quantity));
+        }
+        int updated = recordShopRepository.decrementStock(id, quantity);
+        // Still holding the row lock from the update, so this is exactly the stock our purchase left behind
+        Optional<AlbumStockLevel> stockLevel = recordShopRepository.findStockLevelById(id);
+        if (stockLevel.isEmpty()) {
             throw new AlbumNotFoundException(String.format("No Album with id: %s, was found in the system", id));
         }
+        AlbumStockLevel stock = stockLevel.get();
+        if (updated == 0) {
+            throw new OutOfStockException(String.format("Album with id: %s, has %s in stock, %s were requested", id, stock.getStock(), quantity));
+        }
+        eventPublisher.publishEvent(AlbumStockChangedEvent.builder()
+                .albumId(id)
+                .genre(stock.getGenre())
+                .dateReleased(stock.getDateReleased())
+                .price(stock.getPrice())
+                .stockDelta(-quantity)
+                .remainingStock(stock.getStock())
+                .build());
+        return PurchaseReceipt.builder()
+                .albumId(id)
+                .quantity(quantity)
+                .remainingStock(stock.getStock())
+                .build();
     }
 
     @Override
     public Map<String, Boolean> nullAttributeCatcher(Album album) {
-        Map<String, Boolean> mapAlbum = new HashMap<>();
-        if (album.getId() < 0) {
-            mapAlbum.put("id", true);
-        } else {
-            mapAlbum.put("id", false);
-        }
-        if (album.getName() == null || album.getName().isEmpty()) {
-            mapAlbum.put("name", true);
-        } else {
-            mapAlbum.put("name", false);
-        }
-        if (album.getArtist() == null || album.getArtist().isEmpty()) {
-            mapAlbum.put("artist", true);
-        } else {
-            mapAlbum.put("artist", false);
-        }
-        if (album.getDateReleased() == null) {
-            mapAlbum.put("dateReleased", true);
-        } else {
-            mapAlbum.put("dateReleased", false);
-        }
-        if (album.getGenre() == null) {
-            mapAlbum.put("genre", true);
-        } else {
-            mapAlbum.put("genre", false);
-        }
-        if (album.getStock() < 0) {
-            mapAlbum.put("stock", true);
-        } else {
-            mapAlbum.put("stock", false);
-        }
-        if (album.getPrice() <= 0.0) {
-            mapAlbum.put("price", true);
-        } else {
-            mapAlbum.put("price", false);
-        }
-        return mapAlbum;
+        return AlbumValidator.toMap(AlbumValidator.violations(album));
     }
 }
@@ -0,0 +1,58 @@
+package com.northcoders.record_shop.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load and everyone who asks for the key
+ * while it is running waits for that load and gets its result, or its exception, instead of running their own.
+ * Nothing is kept once the load finishes, so the next caller loads afresh.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    // Rethrows the loader's own exception rather than the CompletionException wrapping it
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Callers that shared another caller's load instead of running their own
+    public long coalesced() {
+        return coalesced.sum();
+    }
+}
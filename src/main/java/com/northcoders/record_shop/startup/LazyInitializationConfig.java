@@ -0,0 +1,24 @@
+package com.northcoders.record_shop.startup;
+
+import com.northcoders.record_shop.controller.RecordShopController;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import com.northcoders.record_shop.service.RecordShopService;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class LazyInitializationConfig {
+
+    // With spring.main.lazy-initialization on, these and everything they depend on are still created at startup,
+    // so the first album request isn't slowed down by building the service, the repositories or the database pool.
+    // Has no effect while lazy initialization is off.
+    @Bean
+    static LazyInitializationExcludeFilter albumRequestPath() {
+        return LazyInitializationExcludeFilter.forBeanTypes(RecordShopController.class, RecordShopService.class,
+                RecordShopRepository.class, DataSource.class, EntityManagerFactory.class);
+    }
+}
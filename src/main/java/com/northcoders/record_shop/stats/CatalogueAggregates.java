@@ -0,0 +1,248 @@
+package com.northcoders.record_shop.stats;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.event.AlbumStockChangedEvent;
+import com.northcoders.record_shop.event.AlbumsBulkUpdatedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumGroupStats;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Count, price, stock and inventory value totals per {@link Genre} and per release year, held in primitive arrays
+ * indexed by genre ordinal and by year offset.
+ * <p>
+ * The totals are adjusted in place from album change events, so reading them costs O(genres + years) however big
+ * the catalogue is. Floating point drift and any missed events are corrected by periodically replacing the totals
+ * with GROUP BY sums from the database. A bulk update marks the totals stale instead, and they are recounted on the
+ * next stale check.
+ */
+@Component
+public class CatalogueAggregates {
+
+    private final Totals byGenre = new Totals(0, Genre.values().length);
+    private Totals byYear = new Totals(LocalDate.now().getYear(), 0);
+
+    // Counts applied changes so a reconcile can tell if the database sums it read are already out of date
+    private long appliedChanges;
+    // Set by a bulk update the totals weren't adjusted for, until a reconcile installs sums that include it
+    private boolean stale;
+
+    @Autowired
+    RecordShopRepository recordShopRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        synchronized (this) {
+            if (event.getPrevious() != null) {
+                apply(event.getPrevious(), -1);
+            }
+            if (event.getCurrent() != null) {
+                apply(event.getCurrent(), 1);
+            }
+            appliedChanges++;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        synchronized (this) {
+            double value = event.getPrice() * event.getStockDelta();
+            if (event.getGenre() != null) {
+                byGenre.add(event.getGenre().ordinal(), 0, 0, event.getStockDelta(), value);
+            }
+            if (event.getDateReleased() != null) {
+                byYear = byYear.including(event.getDateReleased().getYear());
+                byYear.add(byYear.index(event.getDateReleased().getYear()), 0, 0, event.getStockDelta(), value);
+            }
+            appliedChanges++;
+        }
+    }
+
+    // A bulk update changed too many rows to adjust for one by one, so mark the totals for a recount on the scheduler.
+    // Recounting here would take a second connection while the committed transaction's is still held.
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onAlbumsBulkUpdated(AlbumsBulkUpdatedEvent event) {
+        // Also stops a reconcile that read the sums before the update from installing them
+        appliedChanges++;
+        stale = true;
+    }
+
+    private void apply(Album album, int sign) {
+        double price = sign * album.getPrice();
+        long stock = (long) sign * album.getStock();
+        double value = price * album.getStock();
+        if (album.getGenre() != null) {
+            byGenre.add(album.getGenre().ordinal(), sign, price, stock, value);
+        }
+        if (album.getDateReleased() != null) {
+            int year = album.getDateReleased().getYear();
+            byYear = byYear.including(year);
+            byYear.add(byYear.index(year), sign, price, stock, value);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${recordshop.stats.reconcile-interval:PT15M}",
+            initialDelayString = "${recordshop.stats.reconcile-interval:PT15M}")
+    public void reconcile() {
+        recount();
+    }
+
+    // Stays stale when a change lands mid-recount, so it is retried on the next check
+    @Scheduled(fixedDelayString = "${recordshop.stats.stale-check-interval:PT1S}")
+    public void reconcileIfStale() {
+        synchronized (this) {
+            if (!stale) {
+                return;
+            }
+        }
+        recount();
+    }
+
+    // False when a change was applied while querying, leaving the incremental totals in place
+    private boolean recount() {
+        long changesBefore;
+        synchronized (this) {
+            changesBefore = appliedChanges;
+        }
+        // Read-write so the sums come from the primary; a lagging replica would undo changes already applied
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<List<Object[]>> sums = transaction.execute(status ->
+                List.of(recordShopRepository.sumByGenre(), recordShopRepository.sumByReleaseYear()));
+        Totals genres = new Totals(0, Genre.values().length);
+        for (Object[] row : sums.get(0)) {
+            if (row[0] != null) {
+                genres.set(((Genre) row[0]).ordinal(), row);
+            }
+        }
+        Totals years = new Totals(LocalDate.now().getYear(), 0);
+        for (Object[] row : sums.get(1)) {
+            if (row[0] != null) {
+                int year = ((Number) row[0]).intValue();
+                years = years.including(year);
+                years.set(years.index(year), row);
+            }
+        }
+        synchronized (this) {
+            // A change applied while we were querying may or may not be in the sums, so keep the incremental
+            // totals and try again next time rather than risk counting it twice or not at all
+            if (appliedChanges != changesBefore) {
+                return false;
+            }
+            byGenre.copyFrom(genres);
+            byYear = years;
+            stale = false;
+            return true;
+        }
+    }
+
+    public synchronized CatalogueStats snapshot() {
+        List<AlbumGroupStats> genres = new ArrayList<>(Genre.values().length);
+        for (Genre genre : Genre.values()) {
+            genres.add(byGenre.stats(genre.ordinal(), genre.name()));
+        }
+        List<AlbumGroupStats> years = new ArrayList<>();
+        for (int i = 0; i < byYear.count.length; i++) {
+            if (byYear.count[i] > 0) {
+                years.add(byYear.stats(i, String.valueOf(byYear.firstKey + i)));
+            }
+        }
+        return CatalogueStats.builder()
+                .byGenre(genres)
+                .byReleaseYear(years)
+                .build();
+    }
+
+    // Parallel arrays of totals; slot i holds the group with key firstKey + i
+    private static final class Totals {
+        private final int firstKey;
+        private final long[] count;
+        private final double[] priceSum;
+        private final long[] stockSum;
+        private final double[] inventoryValue;
+
+        private Totals(int firstKey, int size) {
+            this(firstKey, new long[size], new double[size], new long[size], new double[size]);
+        }
+
+        private Totals(int firstKey, long[] count, double[] priceSum, long[] stockSum, double[] inventoryValue) {
+            this.firstKey = firstKey;
+            this.count = count;
+            this.priceSum = priceSum;
+            this.stockSum = stockSum;
+            this.inventoryValue = inventoryValue;
+        }
+
+        private int index(int key) {
+            return key - firstKey;
+        }
+
+        // Returns totals with a slot for key, growing a copy of the arrays in either direction when needed
+        private Totals including(int key) {
+            if (count.length == 0) {
+                return new Totals(key, 1);
+            }
+            if (key >= firstKey && key < firstKey + count.length) {
+                return this;
+            }
+            int first = Math.min(firstKey, key);
+            int last = Math.max(firstKey + count.length - 1, key);
+            Totals grown = new Totals(first, last - first + 1);
+            int offset = firstKey - first;
+            System.arraycopy(count, 0, grown.count, offset, count.length);
+            System.arraycopy(priceSum, 0, grown.priceSum, offset, priceSum.length);
+            System.arraycopy(stockSum, 0, grown.stockSum, offset, stockSum.length);
+            System.arraycopy(inventoryValue, 0, grown.inventoryValue, offset, inventoryValue.length);
+            return grown;
+        }
+
+        private void add(int i, long albums, double price, long stock, double value) {
+            count[i] += albums;
+            priceSum[i] += price;
+            stockSum[i] += stock;
+            inventoryValue[i] += value;
+        }
+
+        // Row layout from the repository: group, count, sum(price), sum(stock), sum(price * stock)
+        private void set(int i, Object[] row) {
+            count[i] = ((Number) row[1]).longValue();
+            priceSum[i] = ((Number) row[2]).doubleValue();
+            stockSum[i] = ((Number) row[3]).longValue();
+            inventoryValue[i] = ((Number) row[4]).doubleValue();
+        }
+
+        private void copyFrom(Totals other) {
+            System.arraycopy(other.count, 0, count, 0, count.length);
+            System.arraycopy(other.priceSum, 0, priceSum, 0, priceSum.length);
+            System.arraycopy(other.stockSum, 0, stockSum, 0, stockSum.length);
+            System.arraycopy(other.inventoryValue, 0, inventoryValue, 0, inventoryValue.length);
+        }
+
+        private AlbumGroupStats stats(int i, String group) {
+            return AlbumGroupStats.builder()
+                    .group(group)
+                    .albums(count[i])
+                    .averagePrice(count[i] == 0 ? 0 : priceSum[i] / count[i])
+                    .totalStock(stockSum[i])
+                    .inventoryValue(inventoryValue[i])
+                    .build();
+        }
+    }
+}
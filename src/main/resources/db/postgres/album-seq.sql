@@ -0,0 +1,5 @@
+-- Run at startup by AlbumSequenceAlignment, on Postgres only. Album ids come from the pooled album_seq, allocation
+-- size 50: each nextval hands out the 50 ids ending at the value it returns. Databases created while ids were
+-- IDENTITY already hold rows the sequence knows nothing about, so move it to max(id) and the next block starts
+-- after them. It never moves the sequence back, so running it on every start is harmless.
+select setval('album_seq', greatest((select coalesce(max(id), 1) from album), (select last_value from album_seq)));
@@ -0,0 +1,124 @@
+package com.northcoders.record_shop.admission;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final String ROUTE = "GET /api/recordshop/{id}";
+
+    private static AdaptiveConcurrencyLimit limit(int initialLimit){
+        return new AdaptiveConcurrencyLimit(initialLimit, 2, 20, 2.0, 5 * MS);
+    }
+
+    @Test
+    @DisplayName("tryAcquire admits requests up to the limit and again once one is released")
+    public void test_tryAcquire(){
+        AdaptiveConcurrencyLimit limit = limit(2);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.inFlight());
+    }
+
+    @Test
+    @DisplayName("Healthy responses grow a limit that is in use, up to the maximum")
+    public void test_releaseGrowsLimit(){
+        AdaptiveConcurrencyLimit limit = limit(10);
+        long now = 0;
+        for (int i = 0; i < 1_000; i++) {
+            for (int j = 0; j < limit.limit(); j++) {
+                limit.tryAcquire();
+            }
+            while (limit.inFlight() > 0) {
+                limit.release(ROUTE, now, now + 10 * MS, false);
+            }
+            now += 10 * MS;
+        }
+        assertEquals(20, limit.limit());
+    }
+
+    @Test
+    @DisplayName("A latency well above the baseline cuts the limit once per round trip")
+    public void test_slowResponsesCutLimit(){
+        AdaptiveConcurrencyLimit limit = limit(10);
+        for (int i = 0; i < 4; i++) {
+            limit.tryAcquire();
+        }
+        limit.release(ROUTE, 0, 10 * MS, false);
+
+        // Both were admitted before the first cut, so only one of them cuts
+        limit.release(ROUTE, 20 * MS, 50 * MS, false);
+        limit.release(ROUTE, 21 * MS, 52 * MS, false);
+        assertEquals(9, limit.limit());
+
+        // Admitted after the cut and slow again
+        limit.release(ROUTE, 60 * MS, 100 * MS, false);
+        assertEquals(8, limit.limit());
+    }
+
+    @Test
+    @DisplayName("Shed requests cut the limit, never below the minimum")
+    public void test_shedRequestsCutLimit(){
+        AdaptiveConcurrencyLimit limit = limit(3);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(ROUTE, now, now + MS, true);
+            now += 2 * MS;
+        }
+        assertEquals(2, limit.limit());
+    }
+
+    @Test
+    @DisplayName("Each route is judged against its own baseline")
+    public void test_baselinePerRoute(){
+        AdaptiveConcurrencyLimit limit = limit(10);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.release(ROUTE, now, now + 2 * MS, false);
+            limit.tryAcquire();
+            limit.release("GET /api/recordshop", now, now + 200 * MS, false);
+            now += 300 * MS;
+        }
+        assertEquals(10, limit.limit());
+
+        limit.tryAcquire();
+        limit.release(ROUTE, now, now + 200 * MS, false);
+        assertEquals(9, limit.limit());
+    }
+
+    @Test
+    @DisplayName("A route that stays slow moves its baseline up and the limit recovers, even at low load")
+    public void test_sustainedSlowdownRecovers(){
+        AdaptiveConcurrencyLimit limit = limit(10);
+        limit.tryAcquire();
+        limit.release(ROUTE, 0, 10 * MS, false);
+        long now = 20 * MS;
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(ROUTE, now, now + 40 * MS, false);
+            now += 50 * MS;
+        }
+        assertEquals(3, limit.limit());
+
+        for (int i = 0; i < 200; i++) {
+            limit.tryAcquire();
+            limit.release(ROUTE, now, now + 40 * MS, false);
+            now += 50 * MS;
+        }
+        assertEquals(10, limit.limit());
+    }
+}
@@ -0,0 +1,82 @@
+package com.northcoders.record_shop.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdmissionControlFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+    AdmissionControlFilter filter;
+
+    @BeforeEach
+    public void setup(){
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AdmissionControlFilter(true, 1, 1, 10, 1, 1, 10, 2.0,
+                Duration.ofMillis(50), Duration.ofMillis(1500), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("A request over its class's limit is rejected with a 503 and Retry-After")
+    public void test_rejectsOverLimit() throws Exception {
+        filter.reads().tryAcquire();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/recordshop/7"), response, new MockFilterChain());
+
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+        assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, meterRegistry.get("recordshop.admission.rejected").tag("class", "read").counter().count());
+    }
+
+    @Test
+    @DisplayName("Reads and writes are limited separately and released once served")
+    public void test_separateLimits() throws Exception {
+        filter.reads().tryAcquire();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/recordshop/7"), response, new MockFilterChain());
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(0, filter.writes().inFlight());
+        assertEquals(1, meterRegistry.get("recordshop.admission.in.flight").tag("class", "read").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Long lived streams and paths outside the album API are not limited")
+    public void test_bypassedPaths() throws Exception {
+        filter.reads().tryAcquire();
+
+        for (String path : new String[]{"/api/recordshop/changes", "/api/recordshop/export", "/actuator/health"}) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", path), response, new MockFilterChain());
+            assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Bulk updates are admitted but their latency and status don't move the limit")
+    public void test_bulkUpdatesReleaseWithoutSample() throws Exception {
+        filter = new AdmissionControlFilter(true, 1, 1, 10, 10, 2, 20, 2.0,
+                Duration.ofMillis(50), Duration.ofMillis(1500), meterRegistry);
+        FilterChain shed = (request, response) -> ((HttpServletResponse) response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+        filter.doFilter(new MockHttpServletRequest("PATCH", "/api/recordshop/bulk/price"), new MockHttpServletResponse(), shed);
+        assertEquals(10, filter.writes().limit());
+        assertEquals(0, filter.writes().inFlight());
+
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/recordshop/7"), new MockHttpServletResponse(), shed);
+        assertEquals(9, filter.writes().limit());
+    }
+}
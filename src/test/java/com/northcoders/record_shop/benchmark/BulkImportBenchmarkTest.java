@@ -0,0 +1,91 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import com.northcoders.record_shop.service.RecordShopServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput comparison of the single row postAlbum path against the batched bulk import on H2.
+ * Run with: mvn test -Dtest=BulkImportBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BulkImportBenchmarkTest {
+
+    private static final int ALBUMS = 20_000;
+
+    @Autowired
+    RecordShopServiceImpl recordShopService;
+
+    @Autowired
+    RecordShopRepository recordShopRepository;
+
+    @BeforeEach
+    public void setup(){
+        recordShopRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Bulk import inserts albums faster than one postAlbum call per album")
+    public void benchmark_bulkImportAgainstSingleRowPosts(){
+        // Warm up both paths so the comparison isn't dominated by class loading and JIT
+        insertOneByOne(albums(1_000));
+        recordShopService.importAlbums(albums(1_000));
+        recordShopRepository.deleteAll();
+
+        long singleStart = System.nanoTime();
+        insertOneByOne(albums(ALBUMS));
+        long singleNanos = System.nanoTime() - singleStart;
+        recordShopRepository.deleteAll();
+
+        long bulkStart = System.nanoTime();
+        int imported = 0;
+        List<Album> albums = albums(ALBUMS);
+        for (int from = 0; from < albums.size(); from += RecordShopServiceImpl.MAX_IMPORT_SIZE) {
+            List<Album> request = albums.subList(from, Math.min(from + RecordShopServiceImpl.MAX_IMPORT_SIZE, albums.size()));
+            imported += recordShopService.importAlbums(new ArrayList<>(request)).getImported();
+        }
+        long bulkNanos = System.nanoTime() - bulkStart;
+
+        System.out.printf("postAlbum:    %,d albums in %,d ms (%,.0f albums/s)%n", ALBUMS, singleNanos / 1_000_000, ALBUMS / (singleNanos / 1e9));
+        System.out.printf("importAlbums: %,d albums in %,d ms (%,.0f albums/s)%n", imported, bulkNanos / 1_000_000, imported / (bulkNanos / 1e9));
+        assertThat(imported).isEqualTo(ALBUMS);
+        assertThat(recordShopRepository.count()).isEqualTo(ALBUMS);
+    }
+
+    private void insertOneByOne(List<Album> albums){
+        for (Album album : albums) {
+            recordShopService.postAlbum(album);
+        }
+    }
+
+    private static List<Album> albums(int count){
+        List<Album> albums = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            albums.add(Album.builder()
+                    .name("Album " + i)
+                    .artist("Artist " + (i % 500))
+                    .genre(Genre.values()[i % Genre.values().length])
+                    .dateReleased(LocalDate.of(1970 + i % 50, 1 + i % 12, 1))
+                    .price(5.99 + i % 20)
+                    .stock(i % 30)
+                    .build());
+        }
+        return albums;
+    }
+}
@@ -0,0 +1,291 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.model.Genre;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open model load generator for the album API. Requests are started on a fixed schedule at the configured arrival
+ * rate whatever the response times, each on its own virtual thread, so a slow server ends up with more requests in
+ * flight instead of being sent fewer. Latency is measured from when a request was due, not from when it was
+ * actually sent, which corrects for coordinated omission should the generator itself fall behind.
+ * <p>
+ * Operations, request bodies and the albums read, updated or deleted come from a seeded Random, so runs with the same
+ * settings send the same mix of requests.
+ */
+class LoadGenerator {
+
+    enum Operation {
+        LIST,
+        GET,
+        POST,
+        PUT,
+        DELETE
+    }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient http;
+    private final URI albums;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final Random random;
+    private final IdPool ids = new IdPool();
+
+    // mix is operation=weight pairs, e.g. list=10,get=70,post=10,put=5,delete=5
+    LoadGenerator(HttpClient http, URI baseUrl, String mix, long seed) {
+        this.http = http;
+        this.albums = baseUrl.resolve("/api/recordshop");
+        this.random = new Random(seed);
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split("=");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(pair[1].trim()));
+        }
+        operations = weights.keySet().toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    // Bulk imports albums and remembers every album id the service has, for GET, PUT and DELETE to pick from
+    void seed(int count) throws IOException, InterruptedException {
+        for (int from = 0; from < count; from += 10_000) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = from; i < Math.min(from + 10_000, count); i++) {
+                body.append(i == from ? "" : ",").append(albumJson(i));
+            }
+            send(HttpRequest.newBuilder(albums.resolve("/api/recordshop/bulk"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString())));
+        }
+        HttpResponse<String> existing = send(HttpRequest.newBuilder(URI.create(albums + "?fields=id")).GET());
+        for (JsonNode album : mapper.readTree(existing.body())) {
+            ids.add(album.get("id").asLong());
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    LoadReport run(double ratePerSecond, Duration duration) {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+        long interval = Math.round(1e9 / ratePerSecond);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long scheduled = 0;
+        long maxLagNanos = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long due = start; due < end; due += interval) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                maxLagNanos = Math.max(maxLagNanos, System.nanoTime() - due);
+                Request request = next();
+                long dueNanos = due;
+                executor.execute(() -> execute(request, dueNanos, stats.get(request.operation())));
+                scheduled++;
+            }
+        }
+        return new LoadReport(ratePerSecond, scheduled, System.nanoTime() - start, maxLagNanos, stats);
+    }
+
+    private Request next() {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        Operation operation = operations[0];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                operation = operations[i];
+                break;
+            }
+        }
+        long album = random.nextLong(1_000_000);
+        long id = switch (operation) {
+            case GET, PUT -> ids.pick(random);
+            // Taken out of the pool when scheduled, so later requests don't pick an album that is being deleted
+            case DELETE -> ids.take(random);
+            case LIST, POST -> -1;
+        };
+        if (id == -1 && operation != Operation.LIST) {
+            // Nothing left to read, update or delete
+            operation = Operation.POST;
+        }
+        HttpRequest.Builder builder = switch (operation) {
+            case LIST -> HttpRequest.newBuilder(albums).GET();
+            case GET -> HttpRequest.newBuilder(URI.create(albums + "/" + id)).GET();
+            case POST -> HttpRequest.newBuilder(albums).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(albumJson(album)));
+            case PUT -> HttpRequest.newBuilder(URI.create(albums + "/" + id)).header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(albumJson(album)));
+            case DELETE -> HttpRequest.newBuilder(URI.create(albums + "/" + id)).DELETE();
+        };
+        return new Request(operation, builder.timeout(REQUEST_TIMEOUT).build());
+    }
+
+    private void execute(Request request, long dueNanos, OperationStats stats) {
+        String outcome;
+        try {
+            HttpResponse<String> response = http.send(request.http(), HttpResponse.BodyHandlers.ofString());
+            outcome = String.valueOf(response.statusCode());
+            if (request.operation() == Operation.POST && response.statusCode() == 200) {
+                ids.add(mapper.readTree(response.body()).get("id").asLong());
+            }
+        } catch (HttpTimeoutException e) {
+            outcome = "timeout";
+        } catch (IOException e) {
+            outcome = e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = "interrupted";
+        }
+        stats.record(System.nanoTime() - dueNanos, outcome);
+    }
+
+    private static String albumJson(long i) {
+        return String.format(Locale.ROOT, "{\"name\":\"Load %d\",\"artist\":\"Artist %d\",\"genre\":\"%s\",\"dateReleased\":\"%d-%02d-01\","
+                        + "\"price\":%.2f,\"stock\":%d}",
+                i, i % 500, Genre.values()[(int) (i % Genre.values().length)], 1960 + i % 60, 1 + i % 12,
+                4.99 + i % 20, 10 + i % 90);
+    }
+
+    private record Request(Operation operation, HttpRequest http) {}
+
+    static class OperationStats {
+
+        // Auto resizing, so no latency is too large to record
+        final Histogram latencies = new ConcurrentHistogram(3);
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        void record(long latencyNanos, String outcome) {
+            latencies.recordValue(latencyNanos);
+            outcomes.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+        }
+
+        long errors() {
+            return outcomes.entrySet().stream()
+                    .filter(e -> !e.getKey().startsWith("2"))
+                    .mapToLong(e -> e.getValue().sum())
+                    .sum();
+        }
+    }
+
+    record LoadReport(double ratePerSecond, long scheduled, long elapsedNanos, long maxLagNanos,
+                      Map<Operation, OperationStats> stats) {
+
+        long completed() {
+            return stats.values().stream().mapToLong(s -> s.latencies.getTotalCount()).sum();
+        }
+
+        long errors() {
+            return stats.values().stream().mapToLong(OperationStats::errors).sum();
+        }
+
+        void print(PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            out.printf("%nTarget %,.0f req/s, %,d requests in %,.1f s (%,.0f req/s), max schedule lag %,.1f ms%n",
+                    ratePerSecond, scheduled, seconds, completed() / seconds, maxLagNanos / 1e6);
+            out.printf("%-7s %9s %9s %8s %9s %9s %9s %9s %9s  %s%n",
+                    "", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "outcomes");
+            Histogram all = new Histogram(3);
+            for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+                OperationStats operation = entry.getValue();
+                if (operation.latencies.getTotalCount() > 0) {
+                    all.add(operation.latencies);
+                    printRow(out, entry.getKey().name(), operation.latencies, operation.errors(), outcomes(operation), seconds);
+                }
+            }
+            printRow(out, "ALL", all, errors(), "", seconds);
+        }
+
+        private static void printRow(PrintStream out, String name, Histogram latencies, long errors, String outcomes, double seconds) {
+            out.printf("%-7s %,9d %,9.0f %,8d %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                    name, latencies.getTotalCount(), latencies.getTotalCount() / seconds, errors,
+                    latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(90) / 1e6,
+                    latencies.getValueAtPercentile(99) / 1e6, latencies.getValueAtPercentile(99.9) / 1e6,
+                    latencies.getMaxValue() / 1e6, outcomes);
+        }
+
+        private static String outcomes(OperationStats operation) {
+            Map<String, Long> sorted = new TreeMap<>();
+            operation.outcomes.forEach((outcome, count) -> sorted.put(outcome, count.sum()));
+            return sorted.toString();
+        }
+
+        // One .hgrm percentile distribution per operation, in milliseconds, for plotting or comparing builds
+        void writeHistograms(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+                Histogram latencies = entry.getValue().latencies;
+                if (latencies.getTotalCount() > 0) {
+                    try (PrintStream out = new PrintStream(Files.newOutputStream(
+                            directory.resolve(entry.getKey().name().toLowerCase(Locale.ROOT) + ".hgrm")))) {
+                        latencies.outputPercentileDistribution(out, 1e6);
+                    }
+                }
+            }
+        }
+    }
+
+    static class IdPool {
+
+        private final List<Long> ids = new ArrayList<>();
+
+        synchronized void add(long id) {
+            ids.add(id);
+        }
+
+        // -1 when the pool is empty
+        synchronized long pick(Random random) {
+            return ids.isEmpty() ? -1 : ids.get(random.nextInt(ids.size()));
+        }
+
+        synchronized long take(Random random) {
+            if (ids.isEmpty()) {
+                return -1;
+            }
+            int index = random.nextInt(ids.size());
+            long id = ids.get(index);
+            ids.set(index, ids.get(ids.size() - 1));
+            ids.remove(ids.size() - 1);
+            return id;
+        }
+    }
+}
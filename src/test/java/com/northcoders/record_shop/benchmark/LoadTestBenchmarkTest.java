@@ -0,0 +1,79 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.RecordShopApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fixed arrival rate load test of the album API on H2, reporting latency percentiles, throughput and status codes
+ * per endpoint. Percentile distributions are written to target/loadtest as .hgrm files, which can be compared
+ * between builds or plotted with the HdrHistogram plotter.
+ * <p>
+ * Starts the application in process unless loadtest.url points at one that is already running, e.g. the packaged
+ * jar. Settings are system properties:
+ * <ul>
+ *     <li>loadtest.rate: requests started per second, default 200</li>
+ *     <li>loadtest.duration and loadtest.warmup: ISO-8601 durations, default PT60S and PT15S</li>
+ *     <li>loadtest.mix: operation weights, default list=5,get=70,post=10,put=10,delete=5</li>
+ *     <li>loadtest.albums: albums imported before the run, default 5000</li>
+ *     <li>loadtest.seed: seed for the operations and albums chosen, default 42</li>
+ *     <li>loadtest.virtual-threads: serve requests on virtual threads, default false</li>
+ * </ul>
+ * Run with: mvn test -Dtest=LoadTestBenchmarkTest -Dbenchmark=true -Dloadtest.rate=500
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoadTestBenchmarkTest {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT60S"));
+    private static final Duration WARMUP = Duration.parse(System.getProperty("loadtest.warmup", "PT15S"));
+    private static final String MIX = System.getProperty("loadtest.mix", "list=5,get=70,post=10,put=10,delete=5");
+    private static final int ALBUMS = Integer.getInteger("loadtest.albums", 5_000);
+    private static final long SEED = Long.getLong("loadtest.seed", 42L);
+    private static final Path REPORT_DIRECTORY = Path.of("target", "loadtest");
+
+    @Test
+    @DisplayName("The album API under a fixed arrival rate mix of reads and writes")
+    public void benchmark_openModelLoad() throws Exception {
+        String url = System.getProperty("loadtest.url");
+        if (url != null) {
+            run(URI.create(url));
+            return;
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecordShopApplication.class)
+                .run("--spring.profiles.active=benchmark",
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest",
+                        "--spring.threads.virtual.enabled=" + Boolean.getBoolean("loadtest.virtual-threads"))) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            run(URI.create("http://localhost:" + port));
+        }
+    }
+
+    private void run(URI baseUrl) throws Exception {
+        try (HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            LoadGenerator generator = new LoadGenerator(http, baseUrl, MIX, SEED);
+            generator.seed(ALBUMS);
+
+            // Same rate and mix, so the measured run starts with warm caches, JIT and connection pools
+            generator.run(RATE, WARMUP);
+            LoadGenerator.LoadReport report = generator.run(RATE, DURATION);
+
+            report.print(System.out);
+            report.writeHistograms(REPORT_DIRECTORY);
+            assertThat(report.completed()).isEqualTo(report.scheduled());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.northcoders.record_shop.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Time from launching the JVM to the first successful album request, and resident memory at that point, for the
+ * plain jar, with Spring AOT, with AOT and the class data sharing archive, and with all of those plus lazy
+ * initialization. Every start is a fresh JVM on H2 and the median of the starts is reported.
+ * Build the artifacts first with: mvn -Pstartup package -DskipTests
+ * Run with: mvn test -Dtest=StartupBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StartupBenchmarkTest {
+
+    private static final Path STARTUP_DIRECTORY = Path.of("target", "startup");
+    private static final int STARTS = Integer.getInteger("startup.starts", 5);
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    @Test
+    @DisplayName("AOT, CDS and lazy initialization shorten the time to the first successful request")
+    public void benchmark_startupModes() throws Exception {
+        Path jar = applicationJar();
+        Path archive = STARTUP_DIRECTORY.resolve("application.jsa");
+        assumeTrue(jar != null && Files.exists(archive), "Run mvn -Pstartup package -DskipTests first");
+
+        List<Mode> modes = List.of(
+                new Mode("jar", List.of(), "benchmark"),
+                new Mode("aot", List.of("-Dspring.aot.enabled=true"), "benchmark"),
+                new Mode("aot+cds", List.of("-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive), "benchmark"),
+                new Mode("aot+cds+lazy", List.of("-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive), "benchmark,startup"));
+        List<String> rows = new ArrayList<>();
+        try (HttpClient http = HttpClient.newHttpClient()) {
+            for (Mode mode : modes) {
+                long[] millis = new long[STARTS];
+                long[] rssKb = new long[STARTS];
+                for (int i = 0; i < STARTS; i++) {
+                    Start start = start(http, jar, mode);
+                    millis[i] = start.millis();
+                    rssKb[i] = start.rssKb();
+                }
+                rows.add(String.format("%-13s first request %,6d ms   RSS %,6d MB", mode.name(), median(millis), median(rssKb) / 1024));
+            }
+        }
+        System.out.println();
+        rows.forEach(System.out::println);
+    }
+
+    private static Path applicationJar() throws IOException {
+        if (!Files.isDirectory(STARTUP_DIRECTORY)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(STARTUP_DIRECTORY)) {
+            return files.filter(file -> file.getFileName().toString().matches("record-shop-.*\\.jar")).findFirst().orElse(null);
+        }
+    }
+
+    private static Start start(HttpClient http, Path jar, Mode mode) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(mode.jvmArguments());
+        command.addAll(List.of("-jar", jar.toString(),
+                "--server.port=" + port,
+                "--spring.profiles.active=" + mode.profiles(),
+                "--spring.datasource.url=jdbc:h2:mem:startup"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/recordshop/page?size=1")).GET().build();
+
+        long begin = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(STARTUP_DIRECTORY.resolve(mode.name() + ".log").toFile())
+                .start();
+        try {
+            long deadline = begin + TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                assertThat(process.isAlive()).as("%s exited during startup, see its log in %s", mode.name(), STARTUP_DIRECTORY).isTrue();
+                try {
+                    if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                        return new Start(millis, rssKb(process.pid()));
+                    }
+                } catch (ConnectException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new AssertionError(mode.name() + " did not answer within " + TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    // Linux only, 0 elsewhere
+    private static long rssKb(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return 0;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private record Mode(String name, List<String> jvmArguments, String profiles) {}
+
+    private record Start(long millis, long rssKb) {}
+}
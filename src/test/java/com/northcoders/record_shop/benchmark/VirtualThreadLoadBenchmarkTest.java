@@ -0,0 +1,198 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.RecordShopApplication;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.service.RecordShopService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput and tail latency of platform thread and virtual thread request handling against a slow database.
+ * Every statement is delayed so connections are held like they would be on a remote, loaded database. Half the
+ * requests hit the database (/page), the other half are served from memory (/stats), which shows whether blocked
+ * database requests starve the requests that don't need a connection at all.
+ * Run with: mvn test -Dtest=VirtualThreadLoadBenchmarkTest -Dbenchmark=true -Djdk.tracePinnedThreads=short
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadLoadBenchmarkTest {
+
+    private static final int ALBUMS = 1_000;
+    private static final int CLIENTS = 1_000;
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final long STATEMENT_DELAY_MS = 20;
+
+    @Test
+    @DisplayName("Virtual threads keep in-memory endpoints responsive while database requests queue")
+    public void benchmark_virtualThreadsAgainstPlatformThreads() throws Exception {
+        LoadResult platform = run(false);
+        LoadResult virtual = run(true);
+
+        platform.print("platform threads");
+        virtual.print("virtual threads ");
+        assertThat(platform.failed).isZero();
+        assertThat(virtual.failed).isZero();
+    }
+
+    private LoadResult run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecordShopApplication.class, SlowDatabase.class)
+                .run("--spring.profiles.active=benchmark",
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + virtualThreads,
+                        "--recordshop.db.acquire-timeout=PT60S",
+                        // Compares how each thread model queues, so nothing may be shed in front of the queue
+                        "--recordshop.admission.enabled=false")) {
+            context.getBean(RecordShopService.class).importAlbums(albums());
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI database = URI.create("http://localhost:" + port + "/api/recordshop/page?size=20");
+            URI memory = URI.create("http://localhost:" + port + "/api/recordshop/stats");
+
+            // Warm up both endpoints so the comparison isn't dominated by class loading and JIT
+            load(database, memory, 50, 10);
+            return load(database, memory, CLIENTS, REQUESTS_PER_CLIENT);
+        }
+    }
+
+    private LoadResult load(URI database, URI memory, int clients, int requestsPerClient) throws Exception {
+        long[][] databaseNanos = new long[clients][requestsPerClient / 2];
+        long[][] memoryNanos = new long[clients][requestsPerClient / 2];
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        try (HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < requestsPerClient / 2; i++) {
+                        databaseNanos[client][i] = timedGet(http, database, failed);
+                        memoryNanos[client][i] = timedGet(http, memory, failed);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+        }
+        return new LoadResult(System.nanoTime() - start, flatten(databaseNanos), flatten(memoryNanos), failed.get());
+    }
+
+    private static long timedGet(HttpClient http, URI uri, AtomicInteger failed) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            failed.incrementAndGet();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long[] flatten(long[][] nanos) {
+        long[] all = Arrays.stream(nanos).flatMapToLong(Arrays::stream).toArray();
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static List<Album> albums() {
+        List<Album> albums = new ArrayList<>(ALBUMS);
+        for (int i = 0; i < ALBUMS; i++) {
+            albums.add(Album.builder()
+                    .name("Album " + i)
+                    .artist("Artist " + (i % 50))
+                    .genre(Genre.values()[i % Genre.values().length])
+                    .dateReleased(LocalDate.of(1970 + i % 50, 1 + i % 12, 1))
+                    .price(5.99 + i % 20)
+                    .stock(i % 30)
+                    .build());
+        }
+        return albums;
+    }
+
+    private record LoadResult(long elapsedNanos, long[] databaseNanos, long[] memoryNanos, int failed) {
+
+        void print(String mode) {
+            int requests = databaseNanos.length + memoryNanos.length;
+            System.out.printf("%s: %,d requests in %,d ms (%,.0f req/s), %d failed%n",
+                    mode, requests, elapsedNanos / 1_000_000, requests / (elapsedNanos / 1e9), failed);
+            System.out.printf("    /page  p50 %,6.1f ms  p99 %,8.1f ms  max %,8.1f ms%n",
+                    percentile(databaseNanos, 0.50), percentile(databaseNanos, 0.99), percentile(databaseNanos, 1.0));
+            System.out.printf("    /stats p50 %,6.1f ms  p99 %,8.1f ms  max %,8.1f ms%n",
+                    percentile(memoryNanos, 0.50), percentile(memoryNanos, 0.99), percentile(memoryNanos, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    // Delays every statement while it holds its connection, like a round trip to a slow database would.
+    // Not a @Configuration so component scanning doesn't slow down the other tests' contexts.
+    static class SlowDatabase {
+
+        @Bean
+        static BeanPostProcessor slowStatements() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)) {
+                        return new SlowDataSource(dataSource);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    static class SlowDataSource extends DelegatingDataSource {
+
+        SlowDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("prepare")) {
+                            Thread.sleep(STATEMENT_DELAY_MS);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -2,22 +2,39 @@ package com.northcoders.record_shop.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.northcoders.record_shop.exception.AlbumNotFoundException;
 import com.northcoders.record_shop.exception.NullAttributeException;
+import com.northcoders.record_shop.exception.OutOfStockException;
+import com.northcoders.record_shop.exception.StaleAlbumVersionException;
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumBatch;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.AlbumPage;
+import com.northcoders.record_shop.model.AlbumGroupStats;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.BulkImportError;
+import com.northcoders.record_shop.model.BulkImportResult;
+import com.northcoders.record_shop.model.BulkUpdateResult;
+import com.northcoders.record_shop.model.PurchaseReceipt;
 import com.northcoders.record_shop.model.Genre;
 import com.northcoders.record_shop.service.RecordShopServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -25,7 +42,15 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @AutoConfigureMockMvc
@@ -35,6 +60,9 @@ class RecordShopControllerTest {
     @Mock
     RecordShopServiceImpl mockRecordShopService;
 
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
     @InjectMocks
     RecordShopController recordShopController;
 
@@ -100,6 +128,90 @@ class RecordShopControllerTest {
         ;
     }
 
+    @Test
+    @DisplayName("Returns a page of albums with the cursor for the next page")
+    public void test_getAlbumPage() throws Exception {
+        List<Album> albums = new ArrayList<>();
+        albums.add(Album.builder().id(1L).name("Beerbongs and Bentleys").build());
+        AlbumPage page = AlbumPage.builder().albums(albums).size(1).nextCursor("AAAAAAAAAAE").build();
+        when(mockRecordShopService.getAlbumPage("AAAAAAAAAAA", 1)).thenReturn(page);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/page?cursor=AAAAAAAAAAA&size=1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.albums[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").value("AAAAAAAAAAE"));
+    }
+
+    @Test
+    @DisplayName("Export streams one JSON album per line")
+    public void test_exportAlbums() throws Exception {
+        Album album1 = Album.builder().id(1L).name("Beerbongs and Bentleys").build();
+        Album album2 = Album.builder().id(2L).name("ASTROWORLD").build();
+        when(mockRecordShopService.exportAlbums(Mockito.any())).thenAnswer(invocation -> {
+            Consumer<Album> consumer = invocation.getArgument(0);
+            consumer.accept(album1);
+            consumer.accept(album2);
+            return 2L;
+        });
+
+        MvcResult result = this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        String body = this.mockMvcController.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1L, mapper.readTree(lines[0]).get("id").asLong());
+        assertEquals("ASTROWORLD", mapper.readTree(lines[1]).get("name").asText());
+    }
+
+    @Test
+    @DisplayName("A fields parameter returns only the requested attributes of each album")
+    public void test_getAllAlbumsFields() throws Exception {
+        when(mockRecordShopService.getAlbums(any(), isNull(), eq(List.of("name", "price"))))
+                .thenReturn(List.of(Map.of("name", "ASTROWORLD", "price", 10.99)));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop?fields=name,price"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("ASTROWORLD"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].price").value(10.99))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].artist").doesNotExist());
+        verify(mockRecordShopService, never()).getAllAlbums();
+    }
+
+    @Test
+    @DisplayName("A fields parameter on a single album returns only the requested attributes")
+    public void test_getAlbumByIdFields() throws Exception {
+        when(mockRecordShopService.getAlbumById(9L, List.of("artist"))).thenReturn(Map.of("artist", "Post Malone"));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/9?fields=artist"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.artist").value("Post Malone"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("A batch of ids returns the albums found and the ids that were missing")
+    public void test_getAlbumsById() throws Exception {
+        Album album = Album.builder().id(3L).name("Blue").build();
+        when(mockRecordShopService.getAlbumsById(List.of(3L, 4L)))
+                .thenReturn(AlbumBatch.builder().albums(List.of(album)).missingIds(List.of(4L)).build());
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/batch?ids=3,4"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.albums[0].name").value("Blue"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missingIds[0]").value(4));
+    }
+
     @Test
     @DisplayName("An incorrect ID returns a Not found status code")
     public void test_getAlbumByIdWrongId() throws Exception {
@@ -227,6 +339,38 @@ class RecordShopControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("ASTROWORLD"));
     }
 
+    @Test
+    @DisplayName("Bulk import returns the imported count and the per row errors")
+    public void test_importAlbums() throws Exception {
+        List<Album> albums = new ArrayList<>();
+        albums.add(Album.builder()
+                .name("ASTROWORLD")
+                .stock(8)
+                .genre(Genre.Rap)
+                .price(10.99)
+                .artist("Travis Scott")
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .build());
+        albums.add(Album.builder().build());
+        BulkImportResult importResult = BulkImportResult.builder()
+                .received(2)
+                .imported(1)
+                .errors(List.of(BulkImportError.builder().index(1).message("The following attributes are invalid: [name]").build()))
+                .build();
+        when(mockRecordShopService.importAlbums(Mockito.anyList())).thenReturn(importResult);
+
+        mapper.registerModule(new JavaTimeModule());
+        String requestBody = mapper.writeValueAsString(albums);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.post("/api/recordshop/bulk").contentType(MediaType.APPLICATION_JSON)
+                                .content(requestBody).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.received").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].index").value(1));
+    }
+
     @Test
     @DisplayName("An incorrect id returns a not found status code")
     public void test_putAlbumIncorrectId() throws Exception {
@@ -338,4 +482,227 @@ class RecordShopControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(12))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("ASTROWORLD"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Purchasing an album returns the remaining stock")
+    public void test_purchaseAlbum() throws Exception {
+        PurchaseReceipt receipt = PurchaseReceipt.builder().albumId(12L).quantity(2).remainingStock(6).build();
+        when(mockRecordShopService.purchaseAlbum(12L, 2)).thenReturn(receipt);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.post("/api/recordshop/12/purchase?quantity=2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.albumId").value(12))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.remainingStock").value(6));
+    }
+
+    @Test
+    @DisplayName("Purchasing a sold out album returns a conflict status code")
+    public void test_purchaseAlbumSoldOut() throws Exception {
+        when(mockRecordShopService.purchaseAlbum(12L, 1)).thenThrow(OutOfStockException.class);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.post("/api/recordshop/12/purchase"))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
+
+    @Test
+    @DisplayName("The album list carries the catalogue ETag and a matching If-None-Match returns not modified")
+    public void test_getAllAlbumsNotModified() throws Exception {
+        when(mockRecordShopService.getCatalogueVersion()).thenReturn("2-2-5");
+        when(mockRecordShopService.getAllAlbums()).thenReturn(new ArrayList<>());
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"2-2-5\""));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop").header(HttpHeaders.IF_NONE_MATCH, "\"2-2-5\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+        verify(mockRecordShopService, Mockito.times(1)).getAllAlbums();
+    }
+
+    @Test
+    @DisplayName("An album is returned with its version as ETag and a matching If-None-Match returns not modified")
+    public void test_getAlbumByIdNotModified() throws Exception {
+        Album album = Album.builder().id(9L).name("Beerbongs and Bentleys").version(3).build();
+        when(mockRecordShopService.getAlbumById(9L)).thenReturn(album);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/9"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/9").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    @Test
+    @DisplayName("A CBOR album gets its own ETag, which revalidates the CBOR body but not the JSON one")
+    public void test_getAlbumByIdCborETag() throws Exception {
+        Album album = Album.builder().id(9L).name("Beerbongs and Bentleys").version(3).build();
+        when(mockRecordShopService.getAlbumById(9L)).thenReturn(album);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/9").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3+cbor\""));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/9").accept(MediaType.APPLICATION_CBOR)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"3+cbor\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/9").accept(MediaType.APPLICATION_JSON)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"3+cbor\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
+    @Test
+    @DisplayName("If-Match on put and delete is passed on as the expected album version")
+    public void test_putAndDeleteAlbumIfMatch() throws Exception {
+        Album album = Album.builder()
+                .id(3L)
+                .name("ASTROWORLD")
+                .stock(8)
+                .genre(Genre.Rap)
+                .price(10.99)
+                .artist("Travis Scott")
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .version(5)
+                .build();
+        when(mockRecordShopService.putAlbum(Mockito.any(Album.class), Mockito.eq(3L), Mockito.eq(4L))).thenReturn(album);
+        when(mockRecordShopService.deleteAlbum(3L, 2L)).thenThrow(StaleAlbumVersionException.class);
+
+        mapper.registerModule(new JavaTimeModule());
+        String requestBody = mapper.writeValueAsString(album);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.put("/api/recordshop/3").contentType(MediaType.APPLICATION_JSON)
+                                .content(requestBody).header(HttpHeaders.IF_MATCH, "\"4\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"5\""));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.delete("/api/recordshop/3").header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+        verify(mockRecordShopService, never()).deleteAlbum(3L);
+    }
+
+    @Test
+    @DisplayName("A weak tag in If-Match never matches, so the write is refused without reaching the service")
+    public void test_weakIfMatchPreconditionFailed() throws Exception {
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.delete("/api/recordshop/3").header(HttpHeaders.IF_MATCH, "W/\"1\""))
+                .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+        verify(mockRecordShopService, never()).deleteAlbum(3L, 1L);
+        verify(mockRecordShopService, never()).deleteAlbum(3L);
+    }
+
+    @Test
+    @DisplayName("Bulk price and stock updates pass the selection to the service and return the updated count")
+    public void test_bulkUpdates() throws Exception {
+        ArgumentCaptor<AlbumFilter> filter = ArgumentCaptor.forClass(AlbumFilter.class);
+        when(mockRecordShopService.repriceAlbums(filter.capture(), isNull(), eq(-20.0)))
+                .thenReturn(BulkUpdateResult.builder().updated(120).build());
+        when(mockRecordShopService.restockAlbums(any(), eq(List.of(3L, 4L)), eq(5)))
+                .thenReturn(BulkUpdateResult.builder().updated(2).build());
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.patch("/api/recordshop/bulk/price?genre=Rock&percent=-20"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.updated").value(120));
+        assertEquals(Genre.Rock, filter.getValue().getGenre());
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.patch("/api/recordshop/bulk/stock?ids=3,4&delta=5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.updated").value(2));
+    }
+
+    @Test
+    @DisplayName("Filter and sort query parameters are passed to the service")
+    public void test_getAlbumsFiltered() throws Exception {
+        List<Album> albums = new ArrayList<>();
+        albums.add(Album.builder().id(2L).name("UTOPIA").artist("Travis Scott").genre(Genre.Rap).price(14.99).build());
+        ArgumentCaptor<AlbumFilter> filter = ArgumentCaptor.forClass(AlbumFilter.class);
+        when(mockRecordShopService.getAlbums(filter.capture(), Mockito.eq(List.of("-price", "name")))).thenReturn(albums);
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop?artist=Travis Scott&genre=Rap&releasedFrom=2018-01-01"
+                                + "&releasedTo=2024-12-31&minPrice=5&maxPrice=20&sort=-price,name"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("UTOPIA"));
+
+        assertEquals("Travis Scott", filter.getValue().getArtist());
+        assertEquals(Genre.Rap, filter.getValue().getGenre());
+        assertEquals(LocalDate.of(2018, 1, 1), filter.getValue().getReleasedFrom());
+        assertEquals(LocalDate.of(2024, 12, 31), filter.getValue().getReleasedTo());
+        assertEquals(5.0, filter.getValue().getMinPrice());
+        assertEquals(20.0, filter.getValue().getMaxPrice());
+        verify(mockRecordShopService, never()).getAllAlbums();
+    }
+
+    @Test
+    @DisplayName("An unknown genre returns a bad request status code")
+    public void test_getAlbumsUnknownGenre() throws Exception {
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop?genre=Polka"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Search suggestions are returned for the query")
+    public void test_suggestAlbums() throws Exception {
+        when(mockRecordShopService.suggestAlbums("astro", 5))
+                .thenReturn(List.of(new AlbumSuggestion(2L, "ASTROWORLD", "Travis Scott")));
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/search/suggest?q=astro&limit=5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].artist").value("Travis Scott"));
+    }
+
+    @Test
+    @DisplayName("Catalogue stats are returned grouped by genre and release year")
+    public void test_getCatalogueStats() throws Exception {
+        AlbumGroupStats rap = AlbumGroupStats.builder().group("Rap").albums(2).averagePrice(15).totalStock(10).inventoryValue(150).build();
+        AlbumGroupStats year = AlbumGroupStats.builder().group("2018").albums(2).averagePrice(15).totalStock(10).inventoryValue(150).build();
+        when(mockRecordShopService.getCatalogueStats())
+                .thenReturn(CatalogueStats.builder().byGenre(List.of(rap)).byReleaseYear(List.of(year)).build());
+
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop/stats"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.byGenre[0].group").value("Rap"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.byGenre[0].inventoryValue").value(150.0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.byReleaseYear[0].group").value("2018"));
+    }
+
+    @Test
+    @DisplayName("The album list is encoded as CBOR when the client accepts it")
+    public void test_getAllAlbumsCbor() throws Exception {
+        Album album = Album.builder().id(1L).name("ASTROWORLD").artist("Travis Scott").genre(Genre.Rap)
+                .dateReleased(LocalDate.of(2018, 8, 3)).price(10.99).stock(8).build();
+        when(mockRecordShopService.getCatalogueVersion()).thenReturn("1-1-0");
+        when(mockRecordShopService.getAllAlbums()).thenReturn(List.of(album));
+
+        byte[] body = this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/recordshop").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Album[] albums = new CBORMapper().registerModule(new JavaTimeModule()).readValue(body, Album[].class);
+        assertEquals("ASTROWORLD", albums[0].getName());
+        assertEquals(LocalDate.of(2018, 8, 3), albums[0].getDateReleased());
+    }
+}
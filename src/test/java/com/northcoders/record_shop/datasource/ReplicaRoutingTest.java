@@ -0,0 +1,179 @@
+package com.northcoders.record_shop.datasource;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumDelta;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.service.RecordShopServiceImpl;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two in-memory H2 databases stand in for the primary and the replica. Nothing replicates between them, so which
+// copy of an album comes back shows which database was read.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "recordshop.datasource.replica.jdbc-url=jdbc:h2:mem:routing-replica",
+        "recordshop.datasource.replica.username=sa",
+        "recordshop.datasource.replica.password=password",
+        "recordshop.datasource.read-your-writes-window=PT30S",
+        "recordshop.delta.settle-time=PT0S"
+})
+@ActiveProfiles("test")
+class ReplicaRoutingTest {
+
+    private static final long ID = 900_001L;
+
+    @Autowired
+    RecordShopServiceImpl albumService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+
+    @BeforeEach
+    public void setup(){
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        // Hibernate only manages the primary's schema, so give the replica the same table
+        replica.execute("create table if not exists album (id bigint primary key, name varchar(255), artist varchar(255), "
+                + "genre tinyint, date_released date, price float(53), stock integer, version bigint not null, change_seq bigint not null)");
+        insert(primary, "ASTROWORLD (primary)");
+        insert(replica, "ASTROWORLD (replica)");
+        cacheManager.getCache(RecordShopServiceImpl.ALBUM_CACHE).clear();
+    }
+
+    @AfterEach
+    public void tearDown(){
+        RequestContextHolder.resetRequestAttributes();
+        primary.update("delete from album where id = ?", ID);
+        replica.update("delete from album where id = ?", ID);
+    }
+
+    private static void insert(JdbcTemplate database, String name){
+        database.update("insert into album (id, name, artist, genre, date_released, price, stock, version, change_seq) values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                ID, name, "Travis Scott", Genre.Rap.ordinal(), LocalDate.of(2018, 8, 3), 10.99, 8, 0, 0);
+    }
+
+    private static Album update(){
+        return Album.builder()
+                .name("UTOPIA")
+                .artist("Travis Scott")
+                .genre(Genre.Rap)
+                .dateReleased(LocalDate.of(2023, 7, 28))
+                .price(14.99)
+                .stock(2)
+                .build();
+    }
+
+    private static MockHttpServletResponse startRequest(Cookie... cookies){
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (cookies.length > 0) {
+            request.setCookies(cookies);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    private String name(JdbcTemplate database){
+        return database.queryForObject("select name from album where id = ?", String.class, ID);
+    }
+
+    // A read-only service read that isn't cached, so it shows where the current client's reads are routed
+    private String read(){
+        return albumService.getAlbumsById(List.of(ID)).getAlbums().get(0).getName();
+    }
+
+    @Test
+    @DisplayName("Outside a request reads come from the replica and writes go to the primary")
+    public void test_readsFromReplicaWritesToPrimary(){
+        // The test framework binds a mock request to the thread, and a write in it would pin later reads
+        RequestContextHolder.resetRequestAttributes();
+        assertThat(read()).isEqualTo("ASTROWORLD (replica)");
+        assertThat(albumService.getAllAlbums()).extracting(Album::getName).contains("ASTROWORLD (replica)");
+
+        albumService.putAlbum(update(), ID);
+
+        assertThat(name(primary)).isEqualTo("UTOPIA");
+        assertThat(name(replica)).isEqualTo("ASTROWORLD (replica)");
+        // Outside a request nothing is pinned, so the lagging replica is still read
+        assertThat(read()).isEqualTo("ASTROWORLD (replica)");
+    }
+
+    @Test
+    @DisplayName("Album cache misses load from the primary, so a lagging replica is never cached")
+    public void test_cacheMissesLoadFromPrimary(){
+        RequestContextHolder.resetRequestAttributes();
+        assertThat(albumService.getAlbumById(ID).getName()).isEqualTo("ASTROWORLD (primary)");
+
+        albumService.putAlbum(update(), ID);
+        cacheManager.getCache(RecordShopServiceImpl.ALBUM_CACHE).clear();
+
+        assertThat(albumService.getAlbumById(ID).getName()).isEqualTo("UTOPIA");
+        assertThat(read()).isEqualTo("ASTROWORLD (replica)");
+    }
+
+    @Test
+    @DisplayName("Delta sync reads from the primary, so its watermark never passes changes the replica lacks")
+    public void test_deltaReadsFromPrimary(){
+        RequestContextHolder.resetRequestAttributes();
+        // Far past any change the sequence has handed out, so only this album is in the delta
+        long changeSeq = 1_000_000_000L;
+        primary.update("update album set change_seq = ? where id = ?", changeSeq + 1, ID);
+        replica.update("update album set change_seq = ? where id = ?", changeSeq + 1, ID);
+
+        AlbumDelta delta = albumService.getAlbumDelta(changeSeq, 10);
+
+        assertThat(delta.getAlbums()).extracting(Album::getName).containsExactly("ASTROWORLD (primary)");
+        assertThat(delta.getWatermark()).isEqualTo(changeSeq + 1);
+    }
+
+    @Test
+    @DisplayName("A client that wrote reads from the primary until its window ends")
+    public void test_readYourWrites(){
+        MockHttpServletResponse response = startRequest();
+        albumService.putAlbum(update(), ID);
+        assertThat(read()).isEqualTo("UTOPIA");
+
+        Cookie cookie = response.getCookie(ReadYourWrites.COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getMaxAge()).isEqualTo(30);
+
+        startRequest(cookie);
+        assertThat(read()).isEqualTo("UTOPIA");
+
+        startRequest(new Cookie(ReadYourWrites.COOKIE, String.valueOf(System.currentTimeMillis() - 1)));
+        assertThat(read()).isEqualTo("ASTROWORLD (replica)");
+
+        startRequest();
+        assertThat(read()).isEqualTo("ASTROWORLD (replica)");
+    }
+}
@@ -0,0 +1,154 @@
+package com.northcoders.record_shop.feed;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.event.AlbumStockChangedEvent;
+import com.northcoders.record_shop.event.AlbumsBulkUpdatedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlbumChangeFeedTest {
+
+    private AlbumChangeFeed feed;
+
+    @BeforeEach
+    public void setup(){
+        feed = new AlbumChangeFeed();
+    }
+
+    private void change(long id){
+        feed.onAlbumChanged(AlbumChangedEvent.created(Album.builder().id(id).name("Album " + id).build()));
+    }
+
+    private static AlbumChange next(AlbumChangeFeed.Subscription subscription) throws InterruptedException {
+        return subscription.next(Duration.ofMillis(10));
+    }
+
+    @Test
+    @DisplayName("Subscribers receive changes in sequence order")
+    public void test_subscribeReceivesChanges() throws InterruptedException {
+        AlbumChangeFeed.Subscription subscription = feed.subscribe(null);
+        Album album = Album.builder().id(7L).name("Blue").build();
+        feed.onAlbumChanged(AlbumChangedEvent.created(album));
+        feed.onAlbumChanged(AlbumChangedEvent.deleted(album));
+
+        AlbumChange created = next(subscription);
+        assertEquals(1, created.getSequence());
+        assertEquals(AlbumChange.Type.CREATED, created.getType());
+        assertSame(album, created.getAlbum());
+        AlbumChange deleted = next(subscription);
+        assertEquals(2, deleted.getSequence());
+        assertEquals(AlbumChange.Type.DELETED, deleted.getType());
+        assertEquals(7, deleted.getAlbumId());
+        assertNull(deleted.getAlbum());
+        assertNull(next(subscription));
+    }
+
+    @Test
+    @DisplayName("Subscribing with a last sequence replays the changes after it")
+    public void test_subscribeReplaysMissedChanges() throws InterruptedException {
+        for (long id = 1; id <= 5; id++) {
+            change(id);
+        }
+
+        AlbumChangeFeed.Subscription subscription = feed.subscribe(feed.eventId(3));
+        assertEquals(4, next(subscription).getSequence());
+        assertEquals(5, next(subscription).getSequence());
+        change(6);
+        assertEquals(6, next(subscription).getSequence());
+    }
+
+    @Test
+    @DisplayName("A last sequence that can't be replayed is answered with RESYNC")
+    public void test_subscribeResyncsUnknownSequence() throws InterruptedException {
+        change(1);
+
+        AlbumChangeFeed.Subscription ahead = feed.subscribe(feed.eventId(42));
+        AlbumChange resync = next(ahead);
+        assertEquals(AlbumChange.Type.RESYNC, resync.getType());
+        assertEquals(1, resync.getSequence());
+        assertTrue(ahead.isClosed());
+
+        for (long id = 2; id <= AlbumChangeFeed.HISTORY_SIZE + 2; id++) {
+            change(id);
+        }
+        assertEquals(AlbumChange.Type.RESYNC, next(feed.subscribe(feed.eventId(0))).getType());
+        assertEquals(0, feed.subscriberCount());
+    }
+
+    @Test
+    @DisplayName("An event id from another epoch or that can't be parsed is answered with RESYNC")
+    public void test_subscribeResyncsOtherEpoch() throws InterruptedException {
+        change(1);
+        change(2);
+        AlbumChangeFeed restarted = new AlbumChangeFeed();
+
+        assertEquals(AlbumChange.Type.RESYNC, next(restarted.subscribe(feed.eventId(1))).getType());
+        assertEquals(AlbumChange.Type.RESYNC, next(feed.subscribe("1")).getType());
+        assertEquals(AlbumChange.Type.RESYNC, next(feed.subscribe(feed.eventId(1) + "x")).getType());
+        assertEquals(2, next(feed.subscribe(feed.eventId(1))).getSequence());
+    }
+
+    @Test
+    @DisplayName("Stock changes from purchases are sent with the stock left")
+    public void test_stockChange() throws InterruptedException {
+        AlbumChangeFeed.Subscription subscription = feed.subscribe(null);
+        feed.onAlbumStockChanged(AlbumStockChangedEvent.builder().albumId(7L).stockDelta(-2).remainingStock(6).build());
+
+        AlbumChange stock = next(subscription);
+        assertEquals(1, stock.getSequence());
+        assertEquals(AlbumChange.Type.STOCK, stock.getType());
+        assertEquals(7, stock.getAlbumId());
+        assertEquals(6, stock.getStock());
+        assertNull(stock.getAlbum());
+    }
+
+    @Test
+    @DisplayName("A subscriber whose buffer overflows is sent RESYNC and dropped without blocking writers")
+    public void test_overflowResyncs() throws InterruptedException {
+        AlbumChangeFeed.Subscription slow = feed.subscribe(null);
+        AlbumChangeFeed.Subscription fast = feed.subscribe(null);
+        for (long id = 1; id <= AlbumChangeFeed.SUBSCRIBER_BUFFER; id++) {
+            change(id);
+            assertEquals(id, next(fast).getSequence());
+        }
+        change(AlbumChangeFeed.SUBSCRIBER_BUFFER + 1);
+
+        AlbumChange resync = next(slow);
+        assertEquals(AlbumChange.Type.RESYNC, resync.getType());
+        assertEquals(AlbumChangeFeed.SUBSCRIBER_BUFFER + 1, resync.getSequence());
+        assertNull(next(slow));
+        assertTrue(slow.isClosed());
+        assertEquals(AlbumChangeFeed.SUBSCRIBER_BUFFER + 1, next(fast).getSequence());
+        assertEquals(1, feed.subscriberCount());
+    }
+
+    @Test
+    @DisplayName("A bulk update resyncs current subscribers and clients resuming from before it")
+    public void test_bulkUpdateResyncs() throws InterruptedException {
+        change(1);
+        AlbumChangeFeed.Subscription subscription = feed.subscribe(null);
+        feed.onAlbumsBulkUpdated(AlbumsBulkUpdatedEvent.builder().updated(500).build());
+
+        AlbumChange resync = next(subscription);
+        assertEquals(AlbumChange.Type.RESYNC, resync.getType());
+        assertEquals(2, resync.getSequence());
+        assertTrue(subscription.isClosed());
+
+        change(3);
+        assertEquals(AlbumChange.Type.RESYNC, next(feed.subscribe(feed.eventId(1))).getType());
+        AlbumChangeFeed.Subscription resumed = feed.subscribe(feed.eventId(2));
+        AlbumChange created = next(resumed);
+        assertEquals(3, created.getSequence());
+        assertEquals(AlbumChange.Type.CREATED, created.getType());
+    }
+}
@@ -0,0 +1,63 @@
+package com.northcoders.record_shop.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RecordShopMetricsTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private double errors(String outcome){
+        return meterRegistry.get("recordshop.album.errors").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    @DisplayName("Requests record their SQL statement count and controller and service timings")
+    public void test_requestMetrics() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/recordshop/page"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        DistributionSummary statements = meterRegistry.get("recordshop.sql.statements")
+                .tag("uri", "/api/recordshop/page")
+                .summary();
+        assertThat(statements.count()).isGreaterThanOrEqualTo(1);
+        assertThat(statements.totalAmount()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("recordshop.controller").tag("method", "getAlbumPage").timer().count()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("recordshop.service").tag("method", "getAlbumPage").timer().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Missing and invalid albums are counted by outcome")
+    public void test_albumErrorCounters() throws Exception {
+        double notFound = errors("not_found");
+        double invalid = errors("invalid_attributes");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/recordshop/987654321"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/recordshop")
+                        .contentType("application/json")
+                        .content("{\"name\":\"\"}"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        assertThat(errors("not_found")).isEqualTo(notFound + 1);
+        assertThat(errors("invalid_attributes")).isEqualTo(invalid + 1);
+    }
+}
@@ -0,0 +1,81 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.Genre;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class AlbumProjectionsTest {
+
+    @Autowired
+    RecordShopRepository albumRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    Album astroworld;
+
+    @BeforeEach
+    public void setup(){
+        astroworld = albumRepository.save(album("ASTROWORLD", "Travis Scott", Genre.Rap, 10.99));
+        albumRepository.save(album("UTOPIA", "Travis Scott", Genre.Rap, 14.99));
+        albumRepository.save(album("Beerbongs and Bentleys", "Post Malone", Genre.Pop, 8.99));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static Album album(String name, String artist, Genre genre, double price){
+        return Album.builder()
+                .name(name)
+                .artist(artist)
+                .genre(genre)
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .price(price)
+                .stock(5)
+                .build();
+    }
+
+    private int managedEntities(){
+        return entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+    }
+
+    @Test
+    @DisplayName("findAttributes returns only the requested attributes, filtered and sorted, without managing any album")
+    public void test_findAttributes(){
+        AlbumFilter filter = AlbumFilter.builder().artist("Travis Scott").build();
+
+        List<Map<String, Object>> result = albumRepository.findAttributes(AlbumSpecifications.matching(filter),
+                Sort.by(Sort.Direction.DESC, "price"), List.of("name", "price"));
+
+        assertThat(result).containsExactly(
+                Map.of("name", "UTOPIA", "price", 14.99),
+                Map.of("name", "ASTROWORLD", "price", 10.99));
+        assertThat(result.get(0).keySet()).containsExactly("name", "price");
+        assertThat(managedEntities()).isZero();
+    }
+
+    @Test
+    @DisplayName("findAttributesById returns the requested attributes of one album, or empty when it doesn't exist")
+    public void test_findAttributesById(){
+        Optional<Map<String, Object>> result = albumRepository.findAttributesById(astroworld.getId(), List.of("artist", "genre"));
+
+        assertThat(result).contains(Map.of("artist", "Travis Scott", "genre", Genre.Rap));
+        assertThat(albumRepository.findAttributesById(987654321L, List.of("name"))).isEmpty();
+        assertThat(managedEntities()).isZero();
+    }
+}
@@ -0,0 +1,70 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.Genre;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class AlbumSpecificationsTest {
+
+    @Autowired
+    RecordShopRepository albumRepository;
+
+    @BeforeEach
+    public void setup(){
+        albumRepository.save(album("ASTROWORLD", "Travis Scott", Genre.Rap, LocalDate.of(2018, 8, 3), 10.99));
+        albumRepository.save(album("UTOPIA", "Travis Scott", Genre.Rap, LocalDate.of(2023, 7, 28), 14.99));
+        albumRepository.save(album("Beerbongs and Bentleys", "Post Malone", Genre.Pop, LocalDate.of(2018, 4, 27), 8.99));
+        albumRepository.save(album("Wrecking Ball", "Miley Cyrus", Genre.Country, LocalDate.of(2013, 10, 4), 5.99));
+    }
+
+    private static Album album(String name, String artist, Genre genre, LocalDate dateReleased, double price){
+        return Album.builder()
+                .name(name)
+                .artist(artist)
+                .genre(genre)
+                .dateReleased(dateReleased)
+                .price(price)
+                .stock(5)
+                .build();
+    }
+
+    @Test
+    @DisplayName("An empty filter matches every album")
+    public void test_matchingEmptyFilter(){
+        List<Album> result = albumRepository.findAll(AlbumSpecifications.matching(AlbumFilter.builder().build()));
+        assertThat(result).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Artist and genre filters match exactly and combine with AND")
+    public void test_matchingArtistAndGenre(){
+        AlbumFilter filter = AlbumFilter.builder().artist("Travis Scott").genre(Genre.Rap).build();
+        List<Album> result = albumRepository.findAll(AlbumSpecifications.matching(filter), Sort.by(Sort.Direction.DESC, "price"));
+        assertThat(result).extracting("name").containsExactly("UTOPIA", "ASTROWORLD");
+    }
+
+    @Test
+    @DisplayName("Release date and price ranges are inclusive")
+    public void test_matchingRanges(){
+        AlbumFilter filter = AlbumFilter.builder()
+                .releasedFrom(LocalDate.of(2018, 4, 27))
+                .releasedTo(LocalDate.of(2018, 12, 31))
+                .minPrice(8.99)
+                .maxPrice(10.99)
+                .build();
+        List<Album> result = albumRepository.findAll(AlbumSpecifications.matching(filter), Sort.by("dateReleased"));
+        assertThat(result).extracting("name").containsExactly("Beerbongs and Bentleys", "ASTROWORLD");
+    }
+}
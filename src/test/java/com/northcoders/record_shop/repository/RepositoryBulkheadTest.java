@@ -0,0 +1,109 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.exception.DatabaseBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RepositoryBulkheadTest {
+
+    private static MethodInvocation invocation(Object result) throws Throwable {
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(RecordShopRepository.class.getMethod("findLatestAlbumChangeSeq"));
+        when(invocation.proceed()).thenReturn(result);
+        return invocation;
+    }
+
+    @Test
+    @DisplayName("A repository call fails with DatabaseBusyException when no permit frees up in time")
+    public void test_invokeTimesOutWhenFull() throws Throwable {
+        RepositoryBulkhead bulkhead = new RepositoryBulkhead(1, Duration.ofMillis(50), new SimpleMeterRegistry());
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MethodInvocation slow = invocation(null);
+        when(slow.proceed()).thenAnswer(call -> {
+            holding.countDown();
+            release.await();
+            return "slow";
+        });
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Future<Object> first = executor.submit(() -> {
+            try {
+                return bulkhead.invoke(slow);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        });
+        holding.await(5, TimeUnit.SECONDS);
+
+        Throwable exception = assertThrows(DatabaseBusyException.class, () -> bulkhead.invoke(invocation("fast")));
+        assertEquals("The database is busy, findLatestAlbumChangeSeq could not start within 50 ms", exception.getMessage());
+
+        release.countDown();
+        assertEquals("slow", first.get(5, TimeUnit.SECONDS));
+        assertEquals("fast", bulkhead.invoke(invocation("fast")));
+        assertThat(bulkhead.availablePermits()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("A nested repository call on a thread that already holds a permit doesn't wait for another")
+    public void test_invokeIsReentrant() throws Throwable {
+        RepositoryBulkhead bulkhead = new RepositoryBulkhead(1, Duration.ofMillis(50), new SimpleMeterRegistry());
+        MethodInvocation inner = invocation("inner");
+        MethodInvocation outer = invocation(null);
+        when(outer.proceed()).thenAnswer(call -> bulkhead.invoke(inner));
+
+        assertEquals("inner", bulkhead.invoke(outer));
+        assertThat(bulkhead.availablePermits()).isEqualTo(1);
+    }
+
+    static class Transactions {
+        RepositoryBulkhead bulkhead;
+
+        @Transactional
+        public int insideTransaction() {
+            return bulkhead.availablePermits();
+        }
+
+        public int outsideTransaction() {
+            return bulkhead.availablePermits();
+        }
+    }
+
+    @Test
+    @DisplayName("The permit is held for the whole of a @Transactional method and only there")
+    public void test_transactionAdvisorHoldsPermit(){
+        RepositoryBulkhead bulkhead = new RepositoryBulkhead(2, Duration.ofMillis(50), new SimpleMeterRegistry());
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("repositoryBulkhead", bulkhead);
+        Transactions target = new Transactions();
+        target.bulkhead = bulkhead;
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(TransactionBulkheadConfig.transactionBulkheadAdvisor(
+                beanFactory.getBeanProvider(RepositoryBulkhead.class)));
+        Transactions transactions = (Transactions) proxyFactory.getProxy();
+
+        assertEquals(1, transactions.insideTransaction());
+        assertEquals(2, transactions.outsideTransaction());
+        assertThat(bulkhead.availablePermits()).isEqualTo(2);
+    }
+}
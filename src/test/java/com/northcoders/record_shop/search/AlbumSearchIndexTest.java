@@ -0,0 +1,121 @@
+package com.northcoders.record_shop.search;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AlbumSearchIndexTest {
+
+    SimpleMeterRegistry meterRegistry;
+    AlbumSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setup(){
+        meterRegistry = new SimpleMeterRegistry();
+        searchIndex = new AlbumSearchIndex(meterRegistry);
+        searchIndex.index(1L, "ASTROWORLD", "Travis Scott");
+        searchIndex.index(2L, "Beerbongs & Bentleys", "Post Malone");
+        searchIndex.index(3L, "Hollywood's Bleeding", "Post Malone");
+        searchIndex.index(4L, "Björk Greatest Hits", "Björk");
+        searchIndex.index(5L, "Travelling Without Moving", "Jamiroquai");
+    }
+
+    private List<Long> ids(List<AlbumSuggestion> suggestions){
+        return suggestions.stream().map(AlbumSuggestion::getId).toList();
+    }
+
+    @Test
+    @DisplayName("Names and artists are lower cased, stripped of accents and split on punctuation")
+    public void test_normalize(){
+        assertEquals("beerbongs bentleys", AlbumSearchIndex.normalize("  Beerbongs & Bentleys! "));
+        assertEquals("bjork", AlbumSearchIndex.normalize("Björk"));
+        assertEquals("hollywood s bleeding", AlbumSearchIndex.normalize("Hollywood's Bleeding"));
+        assertEquals("", AlbumSearchIndex.normalize(null));
+    }
+
+    @Test
+    @DisplayName("A prefix of any word in the name or artist matches")
+    public void test_suggestPrefix(){
+        assertThat(ids(searchIndex.suggest("tra", 10))).containsExactlyInAnyOrder(1L, 5L);
+        assertThat(ids(searchIndex.suggest("malo", 10))).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(ids(searchIndex.suggest("BJO", 10))).containsExactly(4L);
+        assertThat(searchIndex.suggest("zzz", 10)).isEmpty();
+        assertThat(searchIndex.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Every word of the query has to match and the last one may be partial")
+    public void test_suggestMultipleWords(){
+        assertThat(ids(searchIndex.suggest("post malone blee", 10))).containsExactly(3L);
+        assertThat(ids(searchIndex.suggest("travis moving", 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Names starting with the query rank first and the limit keeps the best matches")
+    public void test_suggestRanking(){
+        searchIndex.index(6L, "Scott Pilgrim Soundtrack", "Various Artists");
+
+        List<AlbumSuggestion> result = searchIndex.suggest("scott", 1);
+
+        assertThat(ids(result)).containsExactly(6L);
+        assertThat(ids(searchIndex.suggest("scott", 10))).containsExactly(6L, 1L);
+        assertEquals("Scott Pilgrim Soundtrack", result.get(0).getName());
+    }
+
+    @Test
+    @DisplayName("The best match is found and removals stay correct when a token has thousands of albums")
+    public void test_suggestRanksEveryCandidate(){
+        for (long id = 100; id < 10_100; id++) {
+            searchIndex.index(id, "Scottish Folk Vol " + id, "Various Artists");
+        }
+        searchIndex.index(20_000L, "Scott", "Scott");
+
+        assertThat(ids(searchIndex.suggest("scott", 1))).containsExactly(20_000L);
+
+        searchIndex.remove(20_000L);
+        for (long id = 100; id < 10_000; id++) {
+            searchIndex.remove(id);
+        }
+        assertThat(ids(searchIndex.suggest("scottish", 100))).hasSize(AlbumSearchIndex.MAX_SUGGESTIONS).allMatch(id -> id >= 10_000);
+    }
+
+    @Test
+    @DisplayName("Change events update and remove albums from the index")
+    public void test_onAlbumChanged(){
+        Album before = Album.builder().id(1L).name("ASTROWORLD").artist("Travis Scott").build();
+        Album after = Album.builder().id(1L).name("UTOPIA").artist("Travis Scott").build();
+
+        searchIndex.onAlbumChanged(AlbumChangedEvent.updated(before, after));
+        assertThat(searchIndex.suggest("astro", 10)).isEmpty();
+        assertThat(ids(searchIndex.suggest("utop", 10))).containsExactly(1L);
+
+        searchIndex.onAlbumChanged(AlbumChangedEvent.deleted(after));
+        assertThat(searchIndex.suggest("travis", 10)).isEmpty();
+        assertEquals(4, searchIndex.size());
+    }
+
+    @Test
+    @DisplayName("The memory estimate is reported per album and returns to zero when the index is emptied")
+    public void test_memoryFootprint(){
+        assertThat(searchIndex.estimatedBytesPerAlbum()).isGreaterThan(0);
+        assertEquals(searchIndex.estimatedSizeInBytes(),
+                meterRegistry.get("recordshop.search.index.memory").gauge().value(), 0.5);
+        assertEquals(5, meterRegistry.get("recordshop.search.index.albums").gauge().value(), 0.5);
+
+        for (long id = 1; id <= 5; id++) {
+            searchIndex.remove(id);
+        }
+
+        assertEquals(0, searchIndex.estimatedSizeInBytes());
+        assertEquals(0, searchIndex.estimatedBytesPerAlbum());
+    }
+}
@@ -0,0 +1,79 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumBatch;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Same properties as AlbumWriteStatementCountTest, so the two share one application context
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "recordshop.delta.settle-time=PT0S"
+})
+@ActiveProfiles("test")
+class AlbumReadStatementCountTest {
+
+    @Autowired
+    RecordShopServiceImpl albumService;
+
+    @Autowired
+    RecordShopRepository albumRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void setup(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Album saved(){
+        return albumRepository.save(Album.builder()
+                .name("ASTROWORLD")
+                .artist("Travis Scott")
+                .genre(Genre.Rap)
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .price(10.99)
+                .stock(8)
+                .build());
+    }
+
+    private long statementsFor(Runnable read){
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    @DisplayName("getAlbumsById fetches a 50 album basket in one statement")
+    public void test_getAlbumsByIdOneStatement(){
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(saved().getId());
+        }
+        ids.add(987654321L);
+        AlbumBatch[] batch = new AlbumBatch[1];
+
+        assertEquals(1, statementsFor(() -> batch[0] = albumService.getAlbumsById(ids)));
+        assertThat(batch[0].getAlbums()).extracting(Album::getId).isEqualTo(ids.subList(0, 50));
+        assertThat(batch[0].getMissingIds()).containsExactly(987654321L);
+    }
+}
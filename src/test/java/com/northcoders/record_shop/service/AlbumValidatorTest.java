@@ -0,0 +1,62 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.Genre;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AlbumValidatorTest {
+
+    private static Album valid(){
+        return Album.builder()
+                .id(13L)
+                .name("ASTROWORLD")
+                .artist("Travis Scott")
+                .genre(Genre.Rap)
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .price(3.99)
+                .stock(12)
+                .build();
+    }
+
+    @Test
+    @DisplayName("violations sets one bit per invalid attribute")
+    public void test_violations(){
+        Album album = valid();
+        assertEquals(AlbumValidator.VALID, AlbumValidator.violations(album));
+
+        album.setName("");
+        album.setGenre(null);
+        album.setPrice(0.0);
+        assertEquals(AlbumValidator.NAME | AlbumValidator.GENRE | AlbumValidator.PRICE, AlbumValidator.violations(album));
+    }
+
+    @Test
+    @DisplayName("message lists the invalid attributes in the established order")
+    public void test_message(){
+        assertNull(AlbumValidator.message(AlbumValidator.VALID));
+        assertEquals("The following attributes are invalid: [name]", AlbumValidator.message(AlbumValidator.NAME));
+        assertEquals("The following attributes are invalid: [artist, price, name, genre, dateReleased, id, stock]",
+                AlbumValidator.message(AlbumValidator.violations(new Album(-1, null, null, null, null, 0.0, -1))));
+    }
+
+    @Test
+    @DisplayName("Batch validation fills one mask per album and counts the invalid ones")
+    public void test_violationsBatch(){
+        Album noArtist = valid();
+        noArtist.setArtist(null);
+        Album noStock = valid();
+        noStock.setStock(-1);
+        int[] violations = new int[3];
+
+        assertEquals(2, AlbumValidator.violations(List.of(noArtist, valid(), noStock), violations));
+        assertArrayEquals(new int[]{AlbumValidator.ARTIST, AlbumValidator.VALID, AlbumValidator.STOCK}, violations);
+    }
+}
@@ -0,0 +1,199 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.exception.AlbumNotFoundException;
+import com.northcoders.record_shop.exception.StaleAlbumVersionException;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumDelta;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.AlbumGroupStats;
+import com.northcoders.record_shop.model.AlbumTombstone;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import com.northcoders.record_shop.stats.CatalogueAggregates;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// No settle time, so delta sync sees writes as soon as they commit
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "recordshop.delta.settle-time=PT0S"
+})
+@ActiveProfiles("test")
+class AlbumWriteStatementCountTest {
+
+    @Autowired
+    RecordShopServiceImpl albumService;
+
+    @Autowired
+    RecordShopRepository albumRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CatalogueAggregates catalogueAggregates;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void setup(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Album saved(){
+        return albumRepository.save(album("ASTROWORLD", 10.99));
+    }
+
+    private static Album album(String name, double price){
+        return Album.builder()
+                .name(name)
+                .artist("Travis Scott")
+                .genre(Genre.Rap)
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .price(price)
+                .stock(8)
+                .build();
+    }
+
+    private long statementsFor(Runnable write){
+        statistics.clear();
+        write.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    @DisplayName("putAlbum updates an album in one statement and returns the bumped version")
+    public void test_putAlbumOneStatement(){
+        Album album = saved();
+        Album update = album("UTOPIA", 14.99);
+
+        assertEquals(1, statementsFor(() -> albumService.putAlbum(update, album.getId())));
+        assertEquals(album.getVersion() + 1, update.getVersion());
+        assertEquals(1, statementsFor(() -> albumService.putAlbum(album("Rodeo", 9.99), album.getId(), update.getVersion())));
+
+        Album stored = albumRepository.findById(album.getId()).orElseThrow();
+        assertThat(stored.getName()).isEqualTo("Rodeo");
+        assertEquals(album.getVersion() + 2, stored.getVersion());
+    }
+
+    @Test
+    @DisplayName("deleteAlbum deletes an album, leaves a tombstone and returns what was deleted")
+    public void test_deleteAlbumOneStatement(){
+        Album album = saved();
+        Album[] deleted = new Album[1];
+
+        // One statement on Postgres, H2 writes the tombstone separately
+        assertEquals(2, statementsFor(() -> deleted[0] = albumService.deleteAlbum(album.getId(), album.getVersion())));
+        assertThat(deleted[0].getName()).isEqualTo("ASTROWORLD");
+        assertEquals(Genre.Rap, deleted[0].getGenre());
+        assertEquals(LocalDate.of(2018, 8, 3), deleted[0].getDateReleased());
+        assertThat(albumRepository.findById(album.getId())).isEmpty();
+        assertThat(albumRepository.findTombstonesBetween(album.getChangeSeq(), Long.MAX_VALUE, Limit.unlimited()))
+                .extracting(AlbumTombstone::getAlbumId)
+                .contains(album.getId());
+    }
+
+    @Test
+    @DisplayName("Every write moves an album past the delta watermark taken before it")
+    public void test_writesAdvanceChangeSequence(){
+        Album album = albumService.postAlbum(album("ASTROWORLD", 10.99));
+        long created = album.getChangeSeq();
+        assertThat(created).isPositive();
+
+        albumService.putAlbum(album("UTOPIA", 14.99), album.getId());
+        long updated = albumRepository.findById(album.getId()).orElseThrow().getChangeSeq();
+        assertThat(updated).isGreaterThan(created);
+
+        albumService.purchaseAlbum(album.getId(), 1);
+        long purchased = albumRepository.findById(album.getId()).orElseThrow().getChangeSeq();
+        assertThat(purchased).isGreaterThan(updated);
+
+        AlbumDelta delta = albumService.getAlbumDelta(created, 10);
+        assertThat(delta.getAlbums()).extracting(Album::getId).containsExactly(album.getId());
+        assertEquals(purchased, delta.getWatermark());
+
+        albumService.deleteAlbum(album.getId());
+        delta = albumService.getAlbumDelta(purchased, 10);
+        assertThat(delta.getAlbums()).isEmpty();
+        assertThat(delta.getDeletedIds()).containsExactly(album.getId());
+        assertThat(delta.getWatermark()).isGreaterThan(purchased);
+    }
+
+    @Test
+    @DisplayName("Bulk price and stock updates change every selected album in one statement and keep the stats current")
+    public void test_bulkUpdatesOneStatement(){
+        // A release year of their own, so the year's stats only cover these albums
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Album album = album("Bulk " + i, 10.00);
+            album.setDateReleased(LocalDate.of(1931, 1, 1));
+            ids.add(albumRepository.save(album).getId());
+        }
+        Album before = albumRepository.findById(ids.get(0)).orElseThrow();
+        // Just the UPDATE: the catalogue aggregates are only marked stale and recounted on the scheduler
+        assertEquals(1, statementsFor(() -> assertEquals(3, albumService.repriceAlbums(AlbumFilter.builder().build(), ids, -15).getUpdated())));
+        assertEquals(2, albumService.restockAlbums(AlbumFilter.builder().artist("Travis Scott").build(), ids.subList(0, 2), -10).getUpdated());
+
+        Album after = albumRepository.findById(ids.get(0)).orElseThrow();
+        assertEquals(8.50, after.getPrice());
+        assertEquals(0, after.getStock());
+        assertEquals(before.getVersion() + 2, after.getVersion());
+        assertThat(after.getChangeSeq()).isGreaterThan(before.getChangeSeq());
+        assertThat(albumService.getAlbumDelta(before.getChangeSeq(), 10).getAlbums()).extracting(Album::getId).containsAll(ids);
+        catalogueAggregates.reconcileIfStale();
+        AlbumGroupStats year = catalogueAggregates.snapshot().getByReleaseYear().stream()
+                .filter(stats -> stats.getGroup().equals("1931")).findFirst().orElseThrow();
+        assertEquals(3, year.getAlbums());
+        assertEquals(8.50, year.getAveragePrice(), 1e-9);
+        assertEquals(8, year.getTotalStock());
+    }
+
+    @Test
+    @DisplayName("A bulk price cut stops at one cent and taking stock skips albums that are already out")
+    public void test_bulkUpdatesAtTheirLimits(){
+        Album cheap = albumRepository.save(album("Cheap", 0.05));
+        Album soldOut = album("Sold Out", 10.00);
+        soldOut.setStock(0);
+        soldOut = albumRepository.save(soldOut);
+        List<Long> ids = List.of(cheap.getId(), soldOut.getId());
+
+        assertEquals(2, albumService.repriceAlbums(AlbumFilter.builder().build(), ids, -90).getUpdated());
+        assertEquals(0.01, albumRepository.findById(cheap.getId()).orElseThrow().getPrice());
+        assertEquals(1.00, albumRepository.findById(soldOut.getId()).orElseThrow().getPrice());
+
+        long version = albumRepository.findById(soldOut.getId()).orElseThrow().getVersion();
+        assertEquals(1, albumService.restockAlbums(AlbumFilter.builder().build(), ids, -1).getUpdated());
+        assertEquals(version, albumRepository.findById(soldOut.getId()).orElseThrow().getVersion());
+        assertEquals(7, albumRepository.findById(cheap.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    @DisplayName("Missing albums take one statement and stale versions one more to tell them apart")
+    public void test_missingAndStaleWrites(){
+        Album album = saved();
+
+        assertEquals(1, statementsFor(() -> assertThrows(AlbumNotFoundException.class,
+                () -> albumService.putAlbum(album("UTOPIA", 14.99), 987654321L))));
+        assertEquals(1, statementsFor(() -> assertThrows(AlbumNotFoundException.class,
+                () -> albumService.deleteAlbum(987654321L))));
+        assertEquals(2, statementsFor(() -> assertThrows(StaleAlbumVersionException.class,
+                () -> albumService.deleteAlbum(album.getId(), album.getVersion() + 1))));
+        assertThat(albumRepository.findById(album.getId())).isPresent();
+    }
+}
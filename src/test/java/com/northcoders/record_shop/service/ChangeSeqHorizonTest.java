@@ -0,0 +1,38 @@
+package com.northcoders.record_shop.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChangeSeqHorizonTest {
+
+    private static final long S = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("A sampled change sequence becomes the horizon once it is settle time old")
+    public void test_recordSettles(){
+        ChangeSeqHorizon horizon = new ChangeSeqHorizon(Duration.ofSeconds(15), 10);
+
+        horizon.record(0, 100, 0);
+        horizon.record(S, 120, S);
+        assertEquals(0, horizon.settled());
+
+        horizon.record(15 * S, 150, 15 * S);
+        assertEquals(100, horizon.settled());
+
+        horizon.record(20 * S, 160, 20 * S);
+        assertEquals(120, horizon.settled());
+    }
+
+    @Test
+    @DisplayName("A settle time of zero reads up to the latest change, and one within the write timeout is refused")
+    public void test_settleTime(){
+        assertEquals(Long.MAX_VALUE, new ChangeSeqHorizon(Duration.ZERO, 10).settled());
+        assertThrows(IllegalStateException.class, () -> new ChangeSeqHorizon(Duration.ofSeconds(10), 10));
+    }
+}
@@ -0,0 +1,179 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.exception.AlbumNotFoundException;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumStockLevel;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RecordShopServiceCacheTest {
+
+    @MockitoBean
+    RecordShopRepository albumRepository;
+
+    @Autowired
+    RecordShopServiceImpl albumService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setup(){
+        cacheManager.getCache(RecordShopServiceImpl.ALBUM_CACHE).clear();
+    }
+
+    private static Album album(long id, String name){
+        return Album.builder()
+                .id(id)
+                .name(name)
+                .genre(Genre.Rap)
+                .price(10.99)
+                .stock(8)
+                .artist("Travis Scott")
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Concurrent getAlbumById misses for one id share a single findById")
+    public void test_getAlbumByIdCoalescesConcurrentMisses() throws Exception {
+        int callers = 100;
+        CountDownLatch release = new CountDownLatch(1);
+        when(albumRepository.findById(1L)).thenAnswer(call -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(album(1L, "ASTROWORLD"));
+        });
+        SingleFlight<Long, Album> albumLookups = AopTestUtils.<RecordShopServiceImpl>getTargetObject(albumService).albumLookups;
+        long coalescedBefore = albumLookups.coalesced();
+
+        List<Future<Album>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> albumService.getAlbumById(1L)));
+            }
+            // Every caller missed the empty cache and is waiting on the first one's query
+            while (albumLookups.coalesced() - coalescedBefore < callers - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+        }
+
+        for (Future<Album> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS).getName()).isEqualTo("ASTROWORLD");
+        }
+        verify(albumRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Repeated getAlbumById calls are served from the cache after the first load")
+    public void test_getAlbumByIdCached(){
+        when(albumRepository.findById(1L)).thenReturn(Optional.of(album(1L, "ASTROWORLD")));
+
+        albumService.getAlbumById(1L);
+        Album result = albumService.getAlbumById(1L);
+
+        assertThat(result.getName()).isEqualTo("ASTROWORLD");
+        verify(albumRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Missing albums are not cached")
+    public void test_getAlbumByIdMissingNotCached(){
+        when(albumRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(AlbumNotFoundException.class, () -> albumService.getAlbumById(2L));
+        assertThrows(AlbumNotFoundException.class, () -> albumService.getAlbumById(2L));
+
+        verify(albumRepository, times(2)).findById(2L);
+    }
+
+    @Test
+    @DisplayName("putAlbum and postAlbum write the saved album through to the cache")
+    public void test_putAndPostAlbumUpdateCache(){
+        when(albumRepository.findById(3L)).thenReturn(Optional.of(album(3L, "ASTROWORLD")));
+        when(albumRepository.updateReturningPrevious(Mockito.eq(3L), Mockito.any(Album.class), Mockito.isNull()))
+                .thenReturn(Optional.of(album(3L, "ASTROWORLD")));
+        when(albumRepository.save(Mockito.any(Album.class))).thenAnswer(invocation -> {
+            Album saved = invocation.getArgument(0);
+            if (saved.getId() == 0) {
+                saved.setId(4L);
+            }
+            return saved;
+        });
+
+        albumService.getAlbumById(3L);
+        albumService.putAlbum(album(0L, "UTOPIA"), 3L);
+        albumService.postAlbum(album(0L, "Rodeo"));
+
+        assertThat(albumService.getAlbumById(3L).getName()).isEqualTo("UTOPIA");
+        assertThat(albumService.getAlbumById(4L).getName()).isEqualTo("Rodeo");
+        verify(albumRepository, times(0)).findById(4L);
+    }
+
+    @Test
+    @DisplayName("deleteAlbum evicts the album from the cache")
+    public void test_deleteAlbumEvictsCache(){
+        when(albumRepository.findById(5L)).thenReturn(Optional.of(album(5L, "ASTROWORLD")));
+
+        when(albumRepository.deleteReturning(5L, null)).thenReturn(Optional.of(album(5L, "ASTROWORLD")));
+
+        albumService.getAlbumById(5L);
+        albumService.deleteAlbum(5L);
+        when(albumRepository.findById(5L)).thenReturn(Optional.empty());
+
+        assertThrows(AlbumNotFoundException.class, () -> albumService.getAlbumById(5L));
+    }
+
+    @Test
+    @DisplayName("purchaseAlbum evicts the album only once its transaction commits")
+    public void test_purchaseAlbumEvictsAfterCommit(){
+        when(albumRepository.findById(6L)).thenReturn(Optional.of(album(6L, "ASTROWORLD")));
+        when(albumRepository.decrementStock(6L, 1)).thenReturn(1);
+        when(albumRepository.findStockLevelById(6L))
+                .thenReturn(Optional.of(new AlbumStockLevel(7, Genre.Rap, LocalDate.of(2018, 8, 3), 10.99)));
+        Cache cache = cacheManager.getCache(RecordShopServiceImpl.ALBUM_CACHE);
+        albumService.getAlbumById(6L);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            albumService.purchaseAlbum(6L, 1);
+            // Still uncommitted, so a reload now could only see the old stock
+            assertThat(cache.get(6L)).isNotNull();
+        });
+
+        assertThat(cache.get(6L)).isNull();
+    }
+}
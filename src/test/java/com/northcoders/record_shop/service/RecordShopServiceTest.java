@@ -1,24 +1,61 @@
 package com.northcoders.record_shop.service;
 
+import com.northcoders.record_shop.datasource.ReadYourWrites;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.event.AlbumStockChangedEvent;
+import com.northcoders.record_shop.event.AlbumsBulkUpdatedEvent;
 import com.northcoders.record_shop.exception.AlbumNotFoundException;
+import com.northcoders.record_shop.exception.InvalidQueryParameterException;
 import com.northcoders.record_shop.exception.NullAttributeException;
+import com.northcoders.record_shop.exception.OutOfStockException;
+import com.northcoders.record_shop.exception.StaleAlbumVersionException;
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumBatch;
+import com.northcoders.record_shop.model.AlbumDelta;
+import com.northcoders.record_shop.model.AlbumFilter;
+import com.northcoders.record_shop.model.AlbumPage;
+import com.northcoders.record_shop.model.AlbumStockLevel;
+import com.northcoders.record_shop.model.AlbumSuggestion;
+import com.northcoders.record_shop.model.AlbumTombstone;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.BulkImportResult;
+import com.northcoders.record_shop.model.PurchaseReceipt;
 import com.northcoders.record_shop.model.Genre;
 import com.northcoders.record_shop.repository.RecordShopRepository;
+import com.northcoders.record_shop.search.AlbumSearchIndex;
+import com.northcoders.record_shop.stats.CatalogueAggregates;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @DataJpaTest
@@ -27,6 +64,24 @@ class RecordShopServiceTest {
     @Mock
     RecordShopRepository albumRepository;
 
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    AlbumSearchIndex albumSearchIndex;
+
+    @Mock
+    CatalogueAggregates catalogueAggregates;
+
+    @Mock
+    ChangeSeqHorizon changeSeqHorizon;
+
+    @Spy
+    ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ZERO);
+
     @InjectMocks
     RecordShopServiceImpl albumService;
 
@@ -75,6 +130,189 @@ class RecordShopServiceTest {
         assertThat(result).hasSize(2);
     }
 
+    @Test
+    @DisplayName("getAlbums queries with the filter and the requested sort order")
+    public void test_getAlbums(){
+        List<Album> albumList = new ArrayList<>();
+        albumList.add(Album.builder().id(2L).name("ASTROWORLD").genre(Genre.Rap).build());
+        Sort expectedSort = Sort.by(Sort.Order.desc("price"), Sort.Order.asc("name"));
+        when(albumRepository.findAll(ArgumentMatchers.<Specification<Album>>any(), eq(expectedSort))).thenReturn(albumList);
+
+        List<Album> result = albumService.getAlbums(AlbumFilter.builder().genre(Genre.Rap).build(), List.of("-price", "name"));
+
+        assertThat(result).isEqualTo(albumList);
+    }
+
+    @Test
+    @DisplayName("getAlbums rejects unknown sort attributes and inverted ranges")
+    public void test_getAlbumsInvalidParameters(){
+        AlbumFilter filter = AlbumFilter.builder().build();
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbums(filter, List.of("version")));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbums(filter, List.of("-")));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbums(
+                AlbumFilter.builder().minPrice(10.0).maxPrice(5.0).build(), null));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbums(
+                AlbumFilter.builder().releasedFrom(LocalDate.of(2020, 1, 1)).releasedTo(LocalDate.of(2019, 1, 1)).build(), null));
+    }
+
+    @Test
+    @DisplayName("getAlbumPage returns a full page and a cursor pointing after its last album")
+    public void test_getAlbumPage(){
+        List<Album> albumList = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            albumList.add(Album.builder().id(id).name("Album " + id).build());
+        }
+        when(albumRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(3))).thenReturn(albumList);
+
+        AlbumPage result = albumService.getAlbumPage(null, 2);
+
+        assertThat(result.getAlbums()).hasSize(2);
+        assertThat(result.getSize()).isEqualTo(2);
+        assertEquals(2L, AlbumCursor.decode(result.getNextCursor()));
+    }
+
+    @Test
+    @DisplayName("getAlbumPage seeks past the cursor and returns no cursor on the last page")
+    public void test_getAlbumPageLastPage(){
+        List<Album> albumList = new ArrayList<>();
+        albumList.add(Album.builder().id(3L).name("Album 3").build());
+        when(albumRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(3))).thenReturn(albumList);
+
+        AlbumPage result = albumService.getAlbumPage(AlbumCursor.encode(2L), 2);
+
+        assertThat(result.getAlbums()).hasSize(1);
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("getAlbumPage caps the page size and rejects invalid sizes and cursors")
+    public void test_getAlbumPageInvalidParameters(){
+        when(albumRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(RecordShopServiceImpl.MAX_PAGE_SIZE + 1)))
+                .thenReturn(new ArrayList<>());
+
+        AlbumPage result = albumService.getAlbumPage(null, 10_000);
+
+        assertThat(result.getAlbums()).isEmpty();
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbumPage(null, 0));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbumPage("not a cursor", 5));
+    }
+
+    @Test
+    @DisplayName("getAlbums with fields selects only the requested attributes and rejects unknown ones")
+    public void test_getAlbumsFields(){
+        List<Map<String, Object>> albums = List.of(Map.of("name", "ASTROWORLD", "price", 10.99));
+        when(albumRepository.findAttributes(any(), eq(Sort.by("id")), eq(new LinkedHashSet<>(List.of("name", "price")))))
+                .thenReturn(albums);
+
+        assertThat(albumService.getAlbums(AlbumFilter.builder().build(), null, List.of("name", " price", "name")))
+                .isEqualTo(albums);
+        AlbumFilter filter = AlbumFilter.builder().build();
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbums(filter, null, List.of("changeSeq")));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbums(filter, null, List.of()));
+    }
+
+    @Test
+    @DisplayName("getAlbumById with fields returns the requested attributes or throws when the album is missing")
+    public void test_getAlbumByIdFields(){
+        when(albumRepository.findAttributesById(3L, Set.of("name"))).thenReturn(Optional.of(Map.of("name", "UTOPIA")));
+
+        assertThat(albumService.getAlbumById(3L, List.of("name"))).isEqualTo(Map.of("name", "UTOPIA"));
+        assertThrows(AlbumNotFoundException.class, () -> albumService.getAlbumById(4L, List.of("name")));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbumById(3L, List.of("name;drop")));
+    }
+
+    @Test
+    @DisplayName("getAlbumsById returns albums in request order and the ids that were missing")
+    public void test_getAlbumsById(){
+        Album blue = Album.builder().id(3L).name("Blue").build();
+        Album hounds = Album.builder().id(7L).name("Hounds of Love").build();
+        when(albumRepository.findAllById(List.of(7L, 4L, 3L))).thenReturn(List.of(blue, hounds));
+
+        AlbumBatch batch = albumService.getAlbumsById(List.of(7L, 4L, 3L, 7L));
+
+        assertThat(batch.getAlbums()).containsExactly(hounds, blue);
+        assertThat(batch.getMissingIds()).containsExactly(4L);
+        verify(albumRepository, times(1)).findAllById(anyList());
+    }
+
+    @Test
+    @DisplayName("getAlbumsById splits large id lists into chunks and rejects lists over the limit")
+    public void test_getAlbumsByIdChunks(){
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= RecordShopServiceImpl.MULTI_GET_CHUNK_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        when(albumRepository.findAllById(anyList())).thenReturn(List.of());
+
+        AlbumBatch batch = albumService.getAlbumsById(ids);
+
+        assertThat(batch.getAlbums()).isEmpty();
+        assertThat(batch.getMissingIds()).isEqualTo(ids);
+        verify(albumRepository).findAllById(ids.subList(0, RecordShopServiceImpl.MULTI_GET_CHUNK_SIZE));
+        verify(albumRepository).findAllById(List.of(RecordShopServiceImpl.MULTI_GET_CHUNK_SIZE + 1L));
+        List<Long> tooMany = new ArrayList<>();
+        for (long id = 0; id <= RecordShopServiceImpl.MAX_MULTI_GET_SIZE; id++) {
+            tooMany.add(id);
+        }
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbumsById(tooMany));
+    }
+
+    @Test
+    @DisplayName("getAlbumDelta merges changed albums and tombstones in change order up to the limit and the settled horizon")
+    public void test_getAlbumDelta(){
+        List<Album> changed = List.of(
+                Album.builder().id(1L).name("Album 1").changeSeq(11L).build(),
+                Album.builder().id(2L).name("Album 2").changeSeq(14L).build());
+        List<AlbumTombstone> tombstones = List.of(new AlbumTombstone(12L, 5L), new AlbumTombstone(15L, 6L));
+        when(changeSeqHorizon.settled()).thenReturn(20L);
+        when(albumRepository.findByChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(10L, 20L, Limit.of(4)))
+                .thenReturn(changed);
+        when(albumRepository.findTombstonesBetween(10L, 20L, Limit.of(4))).thenReturn(tombstones);
+
+        AlbumDelta result = albumService.getAlbumDelta(10L, 3);
+
+        assertThat(result.getAlbums()).extracting(Album::getId).containsExactly(1L, 2L);
+        assertThat(result.getDeletedIds()).containsExactly(5L);
+        assertEquals(14L, result.getWatermark());
+        assertTrue(result.isHasMore());
+        verify(readYourWrites, times(2)).onPrimary(any());
+    }
+
+    @Test
+    @DisplayName("getAlbumDelta returns the requested watermark when nothing changed and rejects invalid parameters")
+    public void test_getAlbumDeltaNothingChanged(){
+        when(changeSeqHorizon.settled()).thenReturn(20L);
+        when(albumRepository.findByChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(
+                20L, 20L, Limit.of(RecordShopServiceImpl.MAX_DELTA_SIZE + 1))).thenReturn(List.of());
+        when(albumRepository.findTombstonesBetween(20L, 20L, Limit.of(RecordShopServiceImpl.MAX_DELTA_SIZE + 1)))
+                .thenReturn(List.of());
+
+        AlbumDelta result = albumService.getAlbumDelta(20L, 10_000);
+
+        assertThat(result.getAlbums()).isEmpty();
+        assertThat(result.getDeletedIds()).isEmpty();
+        assertEquals(20L, result.getWatermark());
+        assertFalse(result.isHasMore());
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbumDelta(-1L, 10));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.getAlbumDelta(0L, 0));
+    }
+
+    @Test
+    @DisplayName("exportAlbums hands every streamed album to the consumer and detaches it")
+    public void test_exportAlbums(){
+        Album album1 = Album.builder().id(1L).name("Beerbongs and Bentleys").build();
+        Album album2 = Album.builder().id(2L).name("ASTROWORLD").build();
+        when(albumRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(album1, album2));
+        List<Album> exported = new ArrayList<>();
+
+        long result = albumService.exportAlbums(exported::add);
+
+        assertEquals(2, result);
+        assertThat(exported).containsExactly(album1, album2);
+        verify(entityManager).detach(album1);
+        verify(entityManager).detach(album2);
+    }
+
     @Test
     @DisplayName("Method returns optional empty if id doesn't correspond to an album")
     public void test_getAlbumByIdWrongId(){
@@ -119,6 +357,70 @@ class RecordShopServiceTest {
         assertThat(result).isEqualTo(album1);
     }
 
+    @Test
+    @DisplayName("Writes publish album change events for the derived indexes")
+    public void test_writesPublishChangeEvents(){
+        Album stored = Album.builder()
+                .id(1L)
+                .name("Beerbongs and Bentleys")
+                .genre(Genre.Pop)
+                .price(8.99)
+                .stock(5)
+                .artist("Post Malone")
+                .dateReleased(LocalDate.of(2018,4,27))
+                .build();
+        Album update = Album.builder()
+                .name("Hollywood's Bleeding")
+                .genre(Genre.Pop)
+                .price(9.99)
+                .stock(5)
+                .artist("Post Malone")
+                .dateReleased(LocalDate.of(2019,9,6))
+                .build();
+        when(albumRepository.updateReturningPrevious(1L, update, null)).thenReturn(Optional.of(stored));
+        when(albumRepository.deleteReturning(1L, null)).thenReturn(Optional.of(update));
+        ArgumentCaptor<AlbumChangedEvent> events = ArgumentCaptor.forClass(AlbumChangedEvent.class);
+
+        albumService.putAlbum(update, 1L);
+        albumService.deleteAlbum(1L);
+
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(AlbumChangedEvent.Type.UPDATED, events.getAllValues().get(0).getType());
+        assertThat(events.getAllValues().get(0).getPrevious()).usingRecursiveComparison().isEqualTo(stored);
+        assertThat(events.getAllValues().get(0).getCurrent()).isEqualTo(update);
+        assertEquals(AlbumChangedEvent.Type.DELETED, events.getAllValues().get(1).getType());
+        assertEquals(1L, events.getAllValues().get(1).getAlbumId());
+    }
+
+    @Test
+    @DisplayName("suggestAlbums caps the limit and reads from the search index")
+    public void test_suggestAlbums(){
+        List<AlbumSuggestion> suggestions = List.of(new AlbumSuggestion(2L, "ASTROWORLD", "Travis Scott"));
+        when(albumSearchIndex.suggest("astro", AlbumSearchIndex.MAX_SUGGESTIONS)).thenReturn(suggestions);
+
+        assertThat(albumService.suggestAlbums("astro", 1_000)).isEqualTo(suggestions);
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.suggestAlbums("astro", 0));
+    }
+
+    @Test
+    @DisplayName("getCatalogueStats reads the maintained aggregates rather than the repository")
+    public void test_getCatalogueStats(){
+        CatalogueStats stats = CatalogueStats.builder().byGenre(List.of()).byReleaseYear(List.of()).build();
+        when(catalogueAggregates.snapshot()).thenReturn(stats);
+
+        assertThat(albumService.getCatalogueStats()).isSameAs(stats);
+        verifyNoInteractions(albumRepository);
+    }
+
+    @Test
+    @DisplayName("getCatalogueVersion is the latest change sequence, whether an album was written or deleted last")
+    public void test_getCatalogueVersion(){
+        when(albumRepository.findLatestAlbumChangeSeq()).thenReturn(41L);
+        when(albumRepository.findLatestTombstoneChangeSeq()).thenReturn(42L);
+
+        assertEquals("42", albumService.getCatalogueVersion());
+    }
+
     @Test
     @DisplayName("Post album returns bad request if any attributes are invalid")
     public void test_postAlbumNull(){
@@ -141,6 +443,46 @@ class RecordShopServiceTest {
         assertThrows(NullAttributeException.class, () -> albumService.postAlbum(album3));
     }
 
+    @Test
+    @DisplayName("importAlbums inserts the valid albums in batches and reports the invalid ones by index")
+    public void test_importAlbums(){
+        List<Album> albums = new ArrayList<>();
+        for (int i = 0; i < RecordShopServiceImpl.IMPORT_BATCH_SIZE + 10; i++) {
+            albums.add(Album.builder()
+                    .id(1000L + i)
+                    .name("Album " + i)
+                    .genre(Genre.Rock)
+                    .price(9.99)
+                    .stock(3)
+                    .artist("Artist " + i)
+                    .dateReleased(LocalDate.of(2020, 1, 1))
+                    .build());
+        }
+        albums.get(3).setName(null);
+        albums.get(7).setPrice(-1);
+
+        BulkImportResult result = albumService.importAlbums(albums);
+
+        assertEquals(albums.size(), result.getReceived());
+        assertEquals(albums.size() - 2, result.getImported());
+        assertThat(result.getErrors()).extracting("index").containsExactly(3, 7);
+        assertThat(result.getErrors().get(0).getMessage()).contains("name");
+        assertEquals(0L, albums.get(0).getId());
+        verify(albumRepository, times(2)).saveAll(anyList());
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    @DisplayName("importAlbums rejects batches above the import size limit")
+    public void test_importAlbumsTooLarge(){
+        List<Album> albums = new ArrayList<>();
+        for (int i = 0; i <= RecordShopServiceImpl.MAX_IMPORT_SIZE; i++) {
+            albums.add(Album.builder().build());
+        }
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.importAlbums(albums));
+    }
+
     @Test
     @DisplayName("Throws exception if passed a invalid id")
     public void test_putAlbumWrongId(){
@@ -203,13 +545,62 @@ class RecordShopServiceTest {
                 .dateReleased(LocalDate.of(2018,4,27))
                 .build();
 
-        when(albumRepository.findById(id)).thenReturn(Optional.of(album1));
-        when(albumRepository.save(album2)).thenReturn(album2);
+        when(albumRepository.updateReturningPrevious(id, album2, null)).thenReturn(Optional.of(album1));
         Album result = albumService.putAlbum(album2, id);
         assertThat(result.getId()).isEqualTo(id);
         assertThat(result.getName()).isEqualTo("Beerbongs and Bentleys");
     }
 
+    @Test
+    @DisplayName("putAlbum bumps the stored version and rejects a stale expected version")
+    public void test_putAlbumVersionCheck(){
+        long id = 3;
+        Album stored = Album.builder()
+                .id(id)
+                .name("ASTROWORLD")
+                .stock(8)
+                .genre(Genre.Rap)
+                .price(10.99)
+                .artist("Travis Scott")
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .version(4)
+                .build();
+        Album update = Album.builder()
+                .name("UTOPIA")
+                .stock(8)
+                .genre(Genre.Rap)
+                .price(12.99)
+                .artist("Travis Scott")
+                .dateReleased(LocalDate.of(2023, 7, 28))
+                .build();
+        when(albumRepository.updateReturningPrevious(id, update, 3L)).thenReturn(Optional.empty());
+        when(albumRepository.findVersionById(id)).thenReturn(Optional.of(4L));
+        when(albumRepository.updateReturningPrevious(id, update, null)).thenReturn(Optional.of(stored));
+        when(albumRepository.updateReturningPrevious(id, update, 4L)).thenReturn(Optional.of(stored));
+
+        Throwable exception = assertThrows(StaleAlbumVersionException.class, () -> albumService.putAlbum(update, id, 3L));
+        assertEquals("Album with id: 3, is at version 4, not 3", exception.getMessage());
+
+        Album result = albumService.putAlbum(update, id);
+        assertEquals(5, result.getVersion());
+        assertEquals(5, albumService.putAlbum(update, id, 4L).getVersion());
+    }
+
+    @Test
+    @DisplayName("deleteAlbum rejects a stale expected version without deleting")
+    public void test_deleteAlbumVersionCheck(){
+        long id = 1L;
+        Album stored = Album.builder().id(id).name("Beerbongs and Bentleys").version(2).build();
+        when(albumRepository.deleteReturning(id, 1L)).thenReturn(Optional.empty());
+        when(albumRepository.findVersionById(id)).thenReturn(Optional.of(2L));
+        when(albumRepository.deleteReturning(id, 2L)).thenReturn(Optional.of(stored));
+
+        assertThrows(StaleAlbumVersionException.class, () -> albumService.deleteAlbum(id, 1L));
+        verify(eventPublisher, times(0)).publishEvent(any(AlbumChangedEvent.class));
+
+        assertThat(albumService.deleteAlbum(id, 2L)).isEqualTo(stored);
+    }
+
     @Test
     @DisplayName("Throws an exception when passed an invalid id")
     public void test_deleteAlbumWrongId(){
@@ -232,11 +623,74 @@ class RecordShopServiceTest {
                 .dateReleased(LocalDate.of(2018,4,27))
                 .build();
 
-        when(albumRepository.findById(id)).thenReturn(Optional.of(album2));
+        when(albumRepository.deleteReturning(id, null)).thenReturn(Optional.of(album2));
         Album result = albumService.deleteAlbum(id);
         assertThat(result).isEqualTo(album2);
     }
 
+    @Test
+    @DisplayName("purchaseAlbum decrements the stock and returns what is left")
+    public void test_purchaseAlbum(){
+        long id = 7L;
+        when(albumRepository.decrementStock(id, 2)).thenReturn(1);
+        when(albumRepository.findStockLevelById(id))
+                .thenReturn(Optional.of(new AlbumStockLevel(3, Genre.Rock, LocalDate.of(1973, 3, 1), 20.0)));
+
+        PurchaseReceipt result = albumService.purchaseAlbum(id, 2);
+
+        assertEquals(id, result.getAlbumId());
+        assertEquals(2, result.getQuantity());
+        assertEquals(3, result.getRemainingStock());
+        ArgumentCaptor<AlbumStockChangedEvent> event = ArgumentCaptor.forClass(AlbumStockChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(-2, event.getValue().getStockDelta());
+        assertEquals(Genre.Rock, event.getValue().getGenre());
+    }
+
+    @Test
+    @DisplayName("purchaseAlbum throws when there isn't enough stock or the album doesn't exist")
+    public void test_purchaseAlbumSoldOutOrMissing(){
+        when(albumRepository.decrementStock(7L, 2)).thenReturn(0);
+        when(albumRepository.findStockLevelById(7L))
+                .thenReturn(Optional.of(new AlbumStockLevel(1, Genre.Rock, LocalDate.of(1973, 3, 1), 20.0)));
+
+        Throwable exception = assertThrows(OutOfStockException.class, () -> albumService.purchaseAlbum(7L, 2));
+        assertEquals("Album with id: 7, has 1 in stock, 2 were requested", exception.getMessage());
+        assertThrows(AlbumNotFoundException.class, () -> albumService.purchaseAlbum(8L, 1));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.purchaseAlbum(7L, 0));
+    }
+
+    @Test
+    @DisplayName("repriceAlbums and restockAlbums run one set-based update and publish a bulk update event")
+    public void test_bulkUpdates(){
+        AlbumFilter rock = AlbumFilter.builder().genre(Genre.Rock).build();
+        when(albumRepository.updatePrices(rock, null, 0.5)).thenReturn(120);
+        when(albumRepository.updateStock(any(AlbumFilter.class), eq(List.of(3L, 4L)), eq(5))).thenReturn(2);
+
+        assertEquals(120, albumService.repriceAlbums(rock, null, -50).getUpdated());
+        assertEquals(2, albumService.restockAlbums(AlbumFilter.builder().build(), List.of(3L, 4L), 5).getUpdated());
+
+        ArgumentCaptor<AlbumsBulkUpdatedEvent> events = ArgumentCaptor.forClass(AlbumsBulkUpdatedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(120, events.getAllValues().get(0).getUpdated());
+        assertEquals(2, events.getAllValues().get(1).getUpdated());
+    }
+
+    @Test
+    @DisplayName("Bulk updates reject an empty selection and changes that are zero or would make prices negative")
+    public void test_bulkUpdatesInvalid(){
+        AlbumFilter none = AlbumFilter.builder().build();
+        AlbumFilter rock = AlbumFilter.builder().genre(Genre.Rock).build();
+
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.repriceAlbums(none, null, 10));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.restockAlbums(none, List.of(), 10));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.repriceAlbums(rock, null, -100));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.repriceAlbums(rock, null, 0));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.repriceAlbums(rock, null, Double.NaN));
+        assertThrows(InvalidQueryParameterException.class, () -> albumService.restockAlbums(rock, null, 0));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     @DisplayName("Method returns the correct Map of which attributes are null/empty")
     public void test_nullAttributeCatcher(){
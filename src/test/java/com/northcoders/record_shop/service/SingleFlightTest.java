@@ -0,0 +1,89 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.exception.AlbumNotFoundException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 50;
+
+    // Starts CALLERS loads of the same key and lets the first one finish once all the others are waiting on it
+    private static <V> List<Future<V>> concurrentLoads(SingleFlight<Long, V> singleFlight, CountDownLatch release,
+                                                       Supplier<V> loader) throws InterruptedException {
+        List<Future<V>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> singleFlight.load(7L, loader)));
+            }
+            while (singleFlight.coalesced() < CALLERS - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+        }
+        return results;
+    }
+
+    @Test
+    @DisplayName("Concurrent loads of one key run the loader once and all get its result")
+    public void test_loadCoalesces() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = concurrentLoads(singleFlight, release, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "ASTROWORLD";
+        });
+
+        assertEquals(1, loads.get());
+        for (Future<String> result : results) {
+            assertEquals("ASTROWORLD", result.get(5, TimeUnit.SECONDS));
+        }
+        // Nothing is kept, the next load runs the loader again
+        assertEquals("UTOPIA", singleFlight.load(7L, () -> "UTOPIA"));
+    }
+
+    @Test
+    @DisplayName("Every waiter gets the exception thrown by the shared load")
+    public void test_loadSharesException() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AlbumNotFoundException notFound = new AlbumNotFoundException("No Album with id: 7, was found in the system");
+
+        List<Future<String>> results = concurrentLoads(singleFlight, release, () -> {
+            await(release);
+            throw notFound;
+        });
+
+        for (Future<String> result : results) {
+            Throwable exception = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS)).getCause();
+            assertSame(notFound, exception);
+        }
+        assertThat(singleFlight.coalesced()).isEqualTo(CALLERS - 1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.exception.OutOfStockException;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumStockLevel;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StockPurchaseConcurrencyTest {
+
+    private static final int STOCK = 100;
+    private static final int BUYERS = 2_000;
+    private static final int THREADS = 64;
+
+    @Autowired
+    RecordShopServiceImpl albumService;
+
+    @Autowired
+    RecordShopRepository albumRepository;
+
+    @Test
+    @DisplayName("Concurrent purchases of a limited pressing never sell more than the stock")
+    public void test_purchaseAlbumNoOversell() throws Exception {
+        Album album = albumRepository.save(Album.builder()
+                .name("Limited Pressing")
+                .artist("Travis Scott")
+                .genre(Genre.Rap)
+                .price(39.99)
+                .stock(STOCK)
+                .dateReleased(LocalDate.of(2024, 1, 1))
+                .build());
+        long id = album.getId();
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        List<Integer> remaining = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    int left = albumService.purchaseAlbum(id, 1).getRemainingStock();
+                    sold.incrementAndGet();
+                    synchronized (remaining) {
+                        remaining.add(left);
+                    }
+                } catch (OutOfStockException e) {
+                    soldOut.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        assertThat(soldOut.get()).isEqualTo(BUYERS - STOCK);
+        assertThat(albumRepository.findStockLevelById(id)).get().extracting(AlbumStockLevel::getStock).isEqualTo(0);
+        // Every buyer saw a distinct remaining count, so no two purchases took the same unit
+        assertThat(remaining).doesNotHaveDuplicates().hasSize(STOCK);
+    }
+}
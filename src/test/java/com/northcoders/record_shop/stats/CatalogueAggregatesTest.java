@@ -0,0 +1,140 @@
+package com.northcoders.record_shop.stats;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.event.AlbumStockChangedEvent;
+import com.northcoders.record_shop.event.AlbumsBulkUpdatedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumGroupStats;
+import com.northcoders.record_shop.model.CatalogueStats;
+import com.northcoders.record_shop.model.Genre;
+import com.northcoders.record_shop.repository.RecordShopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Import(CatalogueAggregates.class)
+class CatalogueAggregatesTest {
+
+    @Autowired
+    RecordShopRepository albumRepository;
+
+    @Autowired
+    CatalogueAggregates catalogueAggregates;
+
+    @BeforeEach
+    public void setup(){
+        // The aggregates bean outlives each test's rolled back transaction, so start every test from the empty table
+        catalogueAggregates.reconcile();
+    }
+
+    private static Album album(String name, Genre genre, LocalDate dateReleased, double price, int stock){
+        return Album.builder()
+                .name(name)
+                .artist("Various")
+                .genre(genre)
+                .dateReleased(dateReleased)
+                .price(price)
+                .stock(stock)
+                .build();
+    }
+
+    private static AlbumGroupStats group(List<AlbumGroupStats> groups, String name){
+        return groups.stream().filter(stats -> stats.getGroup().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static void assertSameTotals(CatalogueStats expected, CatalogueStats actual){
+        assertThat(actual.getByGenre()).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(expected.getByGenre());
+        assertThat(actual.getByReleaseYear()).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(expected.getByReleaseYear());
+    }
+
+    @Test
+    @DisplayName("Totals kept from change events match a full recount from the database")
+    public void test_incrementalTotalsMatchReconcile(){
+        Album astroworld = albumRepository.save(album("ASTROWORLD", Genre.Rap, LocalDate.of(2018, 8, 3), 10.0, 4));
+        Album utopia = albumRepository.save(album("UTOPIA", Genre.Rap, LocalDate.of(2023, 7, 28), 15.0, 2));
+        Album wreckingBall = albumRepository.save(album("Wrecking Ball", Genre.Country, LocalDate.of(2013, 10, 4), 6.0, 1));
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.created(astroworld));
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.created(utopia));
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.created(wreckingBall));
+
+        // save merges into the managed instance, so keep a copy of the values before the update
+        Album previous = album("UTOPIA", Genre.Rap, LocalDate.of(2023, 7, 28), 15.0, 2);
+        Album repriced = album("UTOPIA", Genre.Pop, LocalDate.of(2023, 7, 28), 20.0, 2);
+        repriced.setId(utopia.getId());
+        albumRepository.save(repriced);
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.updated(previous, repriced));
+
+        albumRepository.decrementStock(astroworld.getId(), 3);
+        catalogueAggregates.onAlbumStockChanged(AlbumStockChangedEvent.builder()
+                .albumId(astroworld.getId())
+                .genre(Genre.Rap)
+                .dateReleased(LocalDate.of(2018, 8, 3))
+                .price(10.0)
+                .stockDelta(-3)
+                .remainingStock(1)
+                .build());
+
+        albumRepository.delete(wreckingBall);
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.deleted(wreckingBall));
+
+        CatalogueStats incremental = catalogueAggregates.snapshot();
+        AlbumGroupStats rap = group(incremental.getByGenre(), "Rap");
+        assertEquals(1, rap.getAlbums());
+        assertEquals(1, rap.getTotalStock());
+        assertEquals(10.0, rap.getInventoryValue(), 1e-9);
+        assertEquals(20.0, group(incremental.getByGenre(), "Pop").getAveragePrice(), 1e-9);
+        assertEquals(0, group(incremental.getByGenre(), "Country").getAlbums());
+        assertThat(incremental.getByReleaseYear()).extracting(AlbumGroupStats::getGroup).containsExactly("2018", "2023");
+
+        catalogueAggregates.reconcile();
+        assertSameTotals(incremental, catalogueAggregates.snapshot());
+    }
+
+    @Test
+    @DisplayName("Reconcile replaces drifted totals with the database sums")
+    public void test_reconcileCorrectsDrift(){
+        albumRepository.save(album("ASTROWORLD", Genre.Rap, LocalDate.of(2018, 8, 3), 10.0, 4));
+        // An event for an album the database never saw leaves the totals wrong until the next reconcile
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.created(album("Ghost", Genre.Rock, LocalDate.of(1999, 1, 1), 9.0, 9)));
+
+        catalogueAggregates.reconcile();
+
+        CatalogueStats stats = catalogueAggregates.snapshot();
+        assertEquals(0, group(stats.getByGenre(), "Rock").getAlbums());
+        assertEquals(40.0, group(stats.getByGenre(), "Rap").getInventoryValue(), 1e-9);
+        assertThat(stats.getByReleaseYear()).extracting(AlbumGroupStats::getGroup).containsExactly("2018");
+        assertThat(stats.getByGenre()).hasSize(Genre.values().length);
+    }
+
+    @Test
+    @DisplayName("A bulk update leaves the totals stale until the next stale check recounts them")
+    public void test_bulkUpdateRecountsWhenStale(){
+        Album album = albumRepository.save(album("ASTROWORLD", Genre.Rap, LocalDate.of(2018, 8, 3), 10.0, 4));
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.created(album));
+        // Nothing is stale yet, so the check leaves even drifted totals to the periodic reconcile
+        catalogueAggregates.onAlbumChanged(AlbumChangedEvent.created(album("Ghost", Genre.Rock, LocalDate.of(1999, 1, 1), 9.0, 9)));
+        catalogueAggregates.reconcileIfStale();
+        assertEquals(1, group(catalogueAggregates.snapshot().getByGenre(), "Rock").getAlbums());
+
+        album.setStock(2);
+        albumRepository.saveAndFlush(album);
+        catalogueAggregates.onAlbumsBulkUpdated(AlbumsBulkUpdatedEvent.builder().updated(1).build());
+        assertEquals(4, group(catalogueAggregates.snapshot().getByGenre(), "Rap").getTotalStock());
+
+        catalogueAggregates.reconcileIfStale();
+
+        CatalogueStats stats = catalogueAggregates.snapshot();
+        assertEquals(2, group(stats.getByGenre(), "Rap").getTotalStock());
+        assertEquals(0, group(stats.getByGenre(), "Rock").getAlbums());
+    }
+}